@@ -0,0 +1,78 @@
+package intersectionmanagement.benchmarks;
+
+import intersectionmanagement.simulator.control.NeuralNetworkController;
+import org.encog.ml.data.MLData;
+import org.encog.ml.data.basic.BasicMLData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+NeuralNetworkController.getControls on sensor readings in the range the sensors give
+Creating the controller is measured as well, which every trial does once for all of its cars
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ControllerBenchmark {
+    private static final int INPUT_SETS = 64;
+
+    @Param({"neat", "basic"})
+    public String controller;
+
+    private byte[] serializedNetwork;
+    private NeuralNetworkController networkController;
+    private double[][] inputs;
+    private double[] controls;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        serializedNetwork = Networks.create(controller, 1);
+        networkController = new NeuralNetworkController(serializedNetwork);
+        Random random = new Random(1);
+        inputs = new double[INPUT_SETS][Networks.INPUTS];
+        for (double[] input : inputs) {
+            for (int i = 0; i < input.length; i++) {
+                // Most sensors see nothing most of the time
+                input[i] = random.nextInt(3) == 0 ? random.nextDouble() : 0;
+            }
+        }
+        controls = new double[Networks.OUTPUTS];
+    }
+
+    @Benchmark
+    public double[] getControls() {
+        networkController.getControls(inputs[next], controls);
+        next = (next + 1) % INPUT_SETS;
+        return controls;
+    }
+
+    // The network's own compute, which getControls replaces for NEAT networks
+    @Benchmark
+    public MLData encogCompute() {
+        MLData output = networkController.neuralNetwork.compute(new BasicMLData(inputs[next]));
+        next = (next + 1) % INPUT_SETS;
+        return output;
+    }
+
+    @Benchmark
+    public NeuralNetworkController createController() {
+        return new NeuralNetworkController(serializedNetwork);
+    }
+}
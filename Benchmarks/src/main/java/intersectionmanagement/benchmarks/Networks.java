@@ -0,0 +1,81 @@
+package intersectionmanagement.benchmarks;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.encog.engine.network.activation.ActivationSigmoid;
+import org.encog.mathutil.randomize.factory.BasicRandomFactory;
+import org.encog.neural.neat.NEATNetwork;
+import org.encog.neural.neat.NEATPopulation;
+import org.encog.neural.networks.BasicNetwork;
+import org.encog.neural.networks.layers.BasicLayer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Random;
+
+/*
+Seeded networks shaped like the ones the evolution produces, so every benchmark run drives cars with the same weights
+ */
+final class Networks {
+    static final int INPUTS = 14;
+    static final int OUTPUTS = 2;
+
+    private Networks() {}
+
+    /*
+    A serialized "neat" network, as the neat algorithm's initial population has them, or a "basic" network, as the
+    cne algorithm sets them up
+    A "cruise" network is a basic network with every weight 0, so every car holds half speed and follows its lane,
+    which keeps traffic flowing however dense it gets
+     */
+    static byte[] create(String controller, long seed) {
+        switch (controller) {
+            case "neat":
+                NEATPopulation population = new NEATPopulation(INPUTS, OUTPUTS, 1);
+                population.setRandomNumberFactory(new BasicRandomFactory(seed));
+                population.setInitialConnectionDensity(1.0);
+                population.reset();
+                NEATNetwork neatNetwork = (NEATNetwork) population.getCODEC().decode(population.flatten().get(0));
+                return SerializationUtils.serialize(neatNetwork);
+            case "basic":
+            case "cruise":
+                BasicNetwork basicNetwork = new BasicNetwork();
+                basicNetwork.addLayer(new BasicLayer(null, true, INPUTS));
+                basicNetwork.addLayer(new BasicLayer(new ActivationSigmoid(), false, 30));
+                basicNetwork.addLayer(new BasicLayer(new ActivationSigmoid(), false, OUTPUTS));
+                basicNetwork.getStructure().finalizeStructure();
+                Random random = new Random(seed);
+                boolean cruise = controller.equals("cruise");
+                for (int layer = 0; layer < basicNetwork.getLayerCount() - 1; layer++) {
+                    for (int from = 0; from < basicNetwork.getLayerTotalNeuronCount(layer); from++) {
+                        for (int to = 0; to < basicNetwork.getLayerNeuronCount(layer + 1); to++) {
+                            basicNetwork.setWeight(layer, from, to, cruise ? 0 : random.nextDouble()*2 - 1);
+                        }
+                    }
+                }
+                return SerializationUtils.serialize(basicNetwork);
+            default:
+                throw new IllegalArgumentException(String.format("%s is not a valid controller type", controller));
+        }
+    }
+
+    /*
+    Trial parameters for a track with a constant spawner, the period sets how dense the traffic gets
+     */
+    static String trialParameters(String track, int spawnPeriod, String controller, String engine) {
+        JSONObject spawner = new JSONObject();
+        spawner.put("type", "constant");
+        spawner.put("period", spawnPeriod);
+        spawner.put("randomness", 0.5);
+        spawner.put("pedestrian_rate", 200);
+        spawner.put("pedestrian_randomness", 1);
+
+        JSONObject parameters = new JSONObject();
+        parameters.put("spawner", spawner);
+        parameters.put("steps", 3600);
+        parameters.put("track", track);
+        parameters.put("seed", 1);
+        parameters.put("engine", engine);
+        parameters.put("neural_network", new JSONArray(create(controller, 1)));
+        return parameters.toString();
+    }
+}
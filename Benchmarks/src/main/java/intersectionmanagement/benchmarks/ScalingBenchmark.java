@@ -0,0 +1,103 @@
+package intersectionmanagement.benchmarks;
+
+import intersectionmanagement.simulator.Simulator;
+import intersectionmanagement.simulator.track.TrackGenerator;
+import intersectionmanagement.trial.Trial;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/*
+Runs generated grids of intersections from one to sixteen intersections with one to three lanes, at several traffic
+densities, to show how the cost of a step grows with the number of actors and where it stops growing linearly
+Unlike the JMH benchmarks each configuration is one whole trial, so the rows also cover traffic building up
+Every row is one CSV line, with the time and allocation per actor step, allocation is only counted for this thread
+Usage: java -cp Benchmarks/target/benchmarks.jar intersectionmanagement.benchmarks.ScalingBenchmark [csv file] [engine]
+ */
+public class ScalingBenchmark {
+    private static final int[] LANES = {1, 2, 3};
+    private static final int[] GRID_SIZES = {1, 2, 3, 4};
+    private static final int[] SPAWN_PERIODS = {160, 80, 40, 20};
+    private static final String CONTROLLER = "cruise";
+
+    public static void main(String[] args) throws IOException {
+        PrintStream out = args.length > 0 ? new PrintStream(args[0], "UTF-8") : System.out;
+        String engine = args.length > 1 ? args[1] : "array";
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        out.println("lanes,columns,rows,intersections,spawn_period,steps,actor_steps,mean_actors,max_actors,seconds," +
+                "steps_per_second,ns_per_actor_step,allocated_bytes,allocation_mb_per_second,collisions");
+
+        // Compiles the simulator's hot paths before anything is measured
+        run(trackFile(1, 1, 1), 40, engine, threads);
+
+        for (int lanes : LANES) {
+            for (int size : GRID_SIZES) {
+                Path track;
+                try {
+                    track = trackFile(lanes, size, size);
+                } catch (IllegalArgumentException e) {
+                    System.err.println(e.getMessage());
+                    continue;
+                }
+                for (int spawnPeriod : SPAWN_PERIODS) {
+                    Result result = run(track, spawnPeriod, engine, threads);
+                    out.println(String.format(Locale.ROOT, "%d,%d,%d,%d,%d,%d,%d,%.1f,%d,%.3f,%.1f,%.1f,%d,%.1f,%d",
+                            lanes, size, size, size*size, spawnPeriod, result.steps, result.actorSteps,
+                            result.actorSteps/(double) result.steps, result.maxActors, result.nanos/1e9,
+                            result.steps/(result.nanos/1e9), result.nanos/(double) Math.max(1, result.actorSteps),
+                            result.allocatedBytes, result.allocatedBytes/1e6/(result.nanos/1e9), result.collisions));
+                    out.flush();
+                }
+                Files.delete(track);
+            }
+        }
+        if (out != System.out) {
+            out.close();
+        }
+    }
+
+    private static Path trackFile(int lanes, int columns, int rows) throws IOException {
+        String track = TrackGenerator.generate(lanes, columns, rows).toString();
+        Path file = Files.createTempFile(TrackGenerator.getName(lanes, columns, rows), ".json");
+        file.toFile().deleteOnExit();
+        Files.write(file, track.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static Result run(Path track, int spawnPeriod, String engine, com.sun.management.ThreadMXBean threads) throws IOException {
+        Trial trial = new Trial(Networks.trialParameters(track.toString(), spawnPeriod, CONTROLLER, engine));
+        Simulator sim = trial.createSimulator();
+        Result result = new Result();
+        long threadId = Thread.currentThread().getId();
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        while (sim.stepCount < trial.getStepLimit()) {
+            sim.step();
+            int actors = sim.actorArray.size();
+            result.actorSteps += actors;
+            result.maxActors = Math.max(result.maxActors, actors);
+        }
+        result.nanos = System.nanoTime() - start;
+        result.allocatedBytes = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        result.steps = sim.stepCount;
+        result.collisions = sim.collisions/2;
+        return result;
+    }
+
+    private static class Result {
+        int steps;
+        long actorSteps;
+        int maxActors;
+        long nanos;
+        long allocatedBytes;
+        // Colliding pairs, like every other report
+        int collisions;
+    }
+}
@@ -0,0 +1,91 @@
+package intersectionmanagement.benchmarks;
+
+import intersectionmanagement.simulator.Actor;
+import intersectionmanagement.simulator.Simulator;
+import intersectionmanagement.simulator.Utility;
+import intersectionmanagement.simulator.car.Car;
+import intersectionmanagement.trial.Trial;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/*
+Car.getSensorValues for the cars of a simulation with traffic built up, each call reads one car's sensors
+Neighbours are every solid actor within the reach of the simulator's 3x3 block of grid cells
+The single row read is what a car does while the heuristic controller drives it
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SensingBenchmark {
+    private static final int WARMUP_STEPS = 1000;
+    private static final float NEIGHBOUR_REACH = 2*400f/Simulator.grid;
+
+    @Param({"tracks/four-way-3-lane.json", "tracks/circle-small.json", "tracks/princess-anne.json"})
+    public String track;
+
+    @Param({"40", "120"})
+    public int spawnPeriod;
+
+    private Car[] cars;
+    private ArrayList<ArrayList<Actor>> neighbours;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Trial trial = new Trial(Networks.trialParameters(track, spawnPeriod, "basic", "array"));
+        Simulator sim = trial.createSimulator();
+        for (int i = 0; i < WARMUP_STEPS; i++) {
+            sim.step();
+        }
+
+        cars = sim.carArray.toArray(new Car[0]);
+        if (cars.length == 0) {
+            throw new IllegalStateException("No cars on the track after the warm-up");
+        }
+        neighbours = new ArrayList<>();
+        for (Car car : cars) {
+            ArrayList<Actor> carNeighbours = new ArrayList<>();
+            for (Actor actor : sim.actorArray) {
+                if (actor.solid && Utility.distance(car.x, car.y, actor.x, actor.y) < NEIGHBOUR_REACH) {
+                    carNeighbours.add(actor);
+                }
+            }
+            neighbours.add(carNeighbours);
+        }
+    }
+
+    @Benchmark
+    public double[] sensorValues() {
+        int i = nextCar();
+        return cars[i].getSensorValues(neighbours.get(i));
+    }
+
+    @Benchmark
+    public double[] firstSensorRow() {
+        int i = nextCar();
+        return cars[i].getSensorValues(neighbours.get(i), 1);
+    }
+
+    private int nextCar() {
+        int i = next;
+        next = (next + 1) % cars.length;
+        return i;
+    }
+}
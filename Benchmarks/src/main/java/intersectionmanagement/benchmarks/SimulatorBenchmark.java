@@ -0,0 +1,79 @@
+package intersectionmanagement.benchmarks;
+
+import intersectionmanagement.simulator.Simulator;
+import intersectionmanagement.trial.Trial;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/*
+Simulator.step on traffic that has already built up
+Every iteration resumes from the same snapshot, so iterations step through the same stretch of the trial
+An iteration that reaches the end of the trial starts over from the snapshot, so no step runs past the trial's length
+Copying the snapshot then is timed too, but it is spread over the thousands of steps between two copies
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimulatorBenchmark {
+    // Steps run before the snapshot is taken
+    private static final int WARMUP_STEPS = 1000;
+
+    @Param({"tracks/circle.json", "tracks/circle-small.json", "tracks/crossing.json", "tracks/crossing-reversed.json",
+            "tracks/four-way.json", "tracks/four-way-2-lane.json", "tracks/four-way-3-lane.json", "tracks/on-ramp.json",
+            "tracks/on-ramp-extra.json", "tracks/on-ramp-reversed.json", "tracks/pedestrians.json",
+            "tracks/princess-anne.json", "tracks/switch.json"})
+    public String track;
+
+    @Param({"40", "120"})
+    public int spawnPeriod;
+
+    @Param({"neat", "basic"})
+    public String controller;
+
+    @Param({"object", "array"})
+    public String engine;
+
+    private Simulator snapshot;
+    private Simulator sim;
+    private int stepLimit;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Trial trial = new Trial(Networks.trialParameters(track, spawnPeriod, controller, engine));
+        stepLimit = trial.getStepLimit();
+        snapshot = trial.createSimulator();
+        for (int i = 0; i < WARMUP_STEPS; i++) {
+            snapshot.step();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void resume() {
+        sim = snapshot.snapshot();
+    }
+
+    @Benchmark
+    public Simulator step() {
+        if (sim.stepCount >= stepLimit) {
+            sim = snapshot.snapshot();
+        }
+        sim.step();
+        return sim;
+    }
+}
@@ -0,0 +1,47 @@
+package intersectionmanagement.benchmarks;
+
+import intersectionmanagement.simulator.track.CompiledTrack;
+import intersectionmanagement.simulator.track.Node;
+import intersectionmanagement.simulator.track.TrackParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+Reading a track resource into curves, and into the compiled graph the simulator runs on
+loadTrack caches its result, so only the uncached paths are measured
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrackParserBenchmark {
+    @Param({"tracks/circle.json", "tracks/circle-small.json", "tracks/crossing.json", "tracks/crossing-reversed.json",
+            "tracks/four-way.json", "tracks/four-way-2-lane.json", "tracks/four-way-3-lane.json", "tracks/on-ramp.json",
+            "tracks/on-ramp-extra.json", "tracks/on-ramp-reversed.json", "tracks/pedestrians.json",
+            "tracks/princess-anne.json", "tracks/switch.json"})
+    public String track;
+
+    @Benchmark
+    public List<Node> parseTrack() throws IOException {
+        return TrackParser.parseTrack(track, false);
+    }
+
+    @Benchmark
+    public CompiledTrack compileTrack() throws IOException {
+        return TrackParser.compileTrack(track, false);
+    }
+}
@@ -0,0 +1,56 @@
+package intersectionmanagement.benchmarks;
+
+import intersectionmanagement.simulator.Simulator;
+import intersectionmanagement.trial.Trial;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+A whole Trial.runSimulation of 3600 steps on every bundled track, as the evolution runs them
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TrialBenchmark {
+    @Param({"tracks/circle.json", "tracks/circle-small.json", "tracks/crossing.json", "tracks/crossing-reversed.json",
+            "tracks/four-way.json", "tracks/four-way-2-lane.json", "tracks/four-way-3-lane.json", "tracks/on-ramp.json",
+            "tracks/on-ramp-extra.json", "tracks/on-ramp-reversed.json", "tracks/pedestrians.json",
+            "tracks/princess-anne.json", "tracks/switch.json"})
+    public String track;
+
+    @Param({"40", "120"})
+    public int spawnPeriod;
+
+    @Param({"neat", "basic"})
+    public String controller;
+
+    @Param({"object", "array"})
+    public String engine;
+
+    private String parameters;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        parameters = Networks.trialParameters(track, spawnPeriod, controller, engine);
+    }
+
+    @Benchmark
+    public Simulator runSimulation() {
+        return new Trial(parameters).runSimulation();
+    }
+}
@@ -1,8 +1,11 @@
 package intersectionmanagement.evolution;
 
 import intersectionmanagement.simulator.Simulator;
+import intersectionmanagement.simulator.StepMetrics;
 import intersectionmanagement.simulator.Utility;
+import intersectionmanagement.simulator.control.NeuralNetworkController;
 import intersectionmanagement.trial.Trial;
+import intersectionmanagement.trial.WarmupCache;
 import org.apache.commons.lang3.SerializationUtils;
 import org.encog.engine.network.activation.ActivationSigmoid;
 import org.encog.ml.CalculateScore;
@@ -50,6 +53,21 @@ public class Evolution {
     private List<JSONObject> trials;
     private Random random = new Random();
     private boolean neatTopology;
+    private boolean earlyTermination;
+    // Lowest score of any fully evaluated candidate, with early termination on worse candidates are cut short
+    private int bestScore = Integer.MAX_VALUE;
+    // With shared seeds every candidate of a generation runs the same seeds, so trials can resume from the warm-up cache
+    private boolean sharedSeeds;
+    private int[][] generationSeeds;
+    // Prefixes of this generation's seeds, cleared when the seeds change
+    private final WarmupCache warmupCache = new WarmupCache();
+    // With batched trials all the trials of a candidate are stepped together in one BatchSimulator
+    private boolean batchTrials;
+    // With metrics the step phases of every trial in a generation are timed and logged together
+    private boolean metrics;
+    private final StepMetrics generationMetrics = new StepMetrics();
+    // Iteration being evaluated, for the flight recorder events
+    private volatile int generation;
 
 
     static {
@@ -64,13 +82,25 @@ public class Evolution {
         trialRepetitions = jsonParameters.getInt("trial_repetitions");
         iterations = jsonParameters.getInt("iterations");
         int populationSize = jsonParameters.getInt("population");
+        earlyTermination = jsonParameters.optBoolean("early_termination", false);
+        sharedSeeds = jsonParameters.optBoolean("shared_seeds", false);
+        batchTrials = jsonParameters.optBoolean("batch_trials", false);
+        metrics = jsonParameters.optBoolean("metrics", false);
 
         trials = new ArrayList<>();
         JSONArray trialsJSON = jsonParameters.getJSONArray("trials");
         for (Object trialObject : trialsJSON) {
             String trial = Utility.loadResource((String) trialObject);
-            trials.add(new JSONObject(trial));
+            JSONObject trialJSON = new JSONObject(trial);
+            if (batchTrials) {
+                trialJSON.put("engine", "array");
+            }
+            if (metrics) {
+                trialJSON.put("metrics", true);
+            }
+            trials.add(trialJSON);
         }
+        generationSeeds = new int[trials.size()][trialRepetitions];
 
         Population population;
         CalculateScore score;
@@ -108,8 +138,18 @@ public class Evolution {
         LOGGER.info("Beginning evolution");
         long time = System.nanoTime();
         for (int i = 0; i < iterations; i++) {
+            GenerationEvent event = new GenerationEvent();
+            event.begin();
+            generation = i;
+            if (sharedSeeds) {
+                newGenerationSeeds();
+            }
             evolution.iteration();
             LOGGER.info(String.format("%03d %05d", i, (int) evolution.getBestGenome().getScore()));
+            if (metrics) {
+                LOGGER.info(String.format("%03d step metrics: %s", i, generationMetrics.summary()));
+                generationMetrics.reset();
+            }
 
             byte[] bestNetwork;
             if (neatTopology) {
@@ -125,6 +165,13 @@ public class Evolution {
             bestNetworkJSON.put("neural_network", bestNetwork);
             LOGGER.info("Serialized best network: " + bestNetworkJSON.toString());
 
+            event.end();
+            if (event.shouldCommit()) {
+                event.generation = i;
+                event.bestScore = (int) evolution.getBestGenome().getScore();
+                event.commit();
+            }
+
             if (evolution.getBestGenome().getScore() == 0) {
                 break;
             }
@@ -247,28 +294,133 @@ public class Evolution {
         return substrate;
     }
 
-    private int runTrials(byte[] neuralNetwork) {
+    /*
+    Every car in every trial of the genome is driven by the one controller, so the network is set up once
+     */
+    private int evaluate(NeuralNetworkController controller) {
+        GenomeEvaluationEvent event = new GenomeEvaluationEvent();
+        event.begin();
+        int score = runTrials(controller);
+        event.end();
+        if (event.shouldCommit()) {
+            event.generation = generation;
+            event.score = score;
+            event.commit();
+        }
+        return score;
+    }
+
+    /*
+    Parameters of repetition i of trial t
+    Genomes are scored on several threads at once, so the shared trial objects are copied rather than given the seed
+     */
+    private String trialParameters(int t, int i) {
+        JSONObject trial = trials.get(t);
+        JSONObject parameters = new JSONObject(trial, JSONObject.getNames(trial));
+        parameters.put("seed", sharedSeeds ? generationSeeds[t][i] : random.nextInt(Integer.MAX_VALUE));
+        return parameters.toString();
+    }
+
+    /*
+    With early termination a candidate is stopped as soon as it has more collisions than the best score so far
+    It can no longer be the best, and its score is only a lower bound of what the full trials would have given
+     */
+    private int runTrials(NeuralNetworkController controller) {
+        if (batchTrials) {
+            return runTrialBatch(controller);
+        }
+
         int totalCollisions = 0;
 
-        for (JSONObject trial : trials) {
-            trial.put("neural_network", neuralNetwork);
+        for (int t = 0; t < trials.size(); t++) {
             for (int i = 0; i < trialRepetitions; i++) {
-                trial.put("seed", random.nextInt(Integer.MAX_VALUE));
-                Trial client = new Trial(trial.toString());
-                Simulator sim = client.runSimulation();
+                Trial client = new Trial(trialParameters(t, i), controller);
+                if (sharedSeeds) {
+                    client.setWarmupCache(warmupCache);
+                }
+                Simulator sim;
+                if (earlyTermination) {
+                    sim = client.runSimulation(Trial.collisionBudget(getBestScore() - totalCollisions));
+                } else {
+                    sim = client.runSimulation();
+                }
                 totalCollisions += sim.collisions/2;
+                if (sim.metrics != null) {
+                    generationMetrics.merge(sim.metrics);
+                }
+                if (sim.stoppedEarly) {
+                    return totalCollisions;
+                }
+            }
+        }
+
+        updateBestScore(totalCollisions);
+        return totalCollisions;
+    }
+
+    /*
+    Runs every trial repetition at once, early termination stops the whole batch when their collisions together go
+    over the best score
+     */
+    private int runTrialBatch(NeuralNetworkController controller) {
+        List<Trial> clients = new ArrayList<>();
+        for (int t = 0; t < trials.size(); t++) {
+            for (int i = 0; i < trialRepetitions; i++) {
+                Trial client = new Trial(trialParameters(t, i), controller);
+                if (sharedSeeds) {
+                    client.setWarmupCache(warmupCache);
+                }
+                clients.add(client);
             }
         }
 
+        List<Simulator> sims;
+        if (earlyTermination) {
+            sims = Trial.runSimulationBatch(clients, Trial.batchCollisionBudget(getBestScore()));
+        } else {
+            sims = Trial.runSimulationBatch(clients, batch -> false);
+        }
+
+        int totalCollisions = 0;
+        boolean stoppedEarly = false;
+        for (Simulator sim : sims) {
+            totalCollisions += sim.collisions/2;
+            stoppedEarly |= sim.stoppedEarly;
+            if (sim.metrics != null) {
+                generationMetrics.merge(sim.metrics);
+            }
+        }
+        if (!stoppedEarly) {
+            updateBestScore(totalCollisions);
+        }
         return totalCollisions;
     }
 
+    private void newGenerationSeeds() {
+        // Snapshots of the last generation's seeds will not be used again
+        warmupCache.clear();
+        for (int[] seeds : generationSeeds) {
+            for (int i = 0; i < seeds.length; i++) {
+                seeds[i] = random.nextInt(Integer.MAX_VALUE);
+            }
+        }
+    }
+
+    // Candidates are scored on several threads at once
+    private synchronized int getBestScore() {
+        return bestScore;
+    }
+
+    private synchronized void updateBestScore(int score) {
+        bestScore = Math.min(bestScore, score);
+    }
+
     private class CNEScore implements CalculateScore {
         @Override
         public double calculateScore(MLMethod phenotype) {
             DoubleArrayGenome genome = (DoubleArrayGenome) phenotype;
             BasicNetwork nn = setupSimpleNN(genome.getData());
-            return runTrials(SerializationUtils.serialize(nn));
+            return evaluate(new NeuralNetworkController(nn));
         }
 
         @Override
@@ -311,7 +463,7 @@ public class Evolution {
         @Override
         public double calculateScore(MLMethod phenotype) {
             NEATNetwork nn = (NEATNetwork) phenotype;
-            return runTrials(SerializationUtils.serialize(nn));
+            return evaluate(new NeuralNetworkController(nn));
         }
 
         @Override
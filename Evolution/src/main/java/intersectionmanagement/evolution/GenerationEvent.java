@@ -0,0 +1,24 @@
+package intersectionmanagement.evolution;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+Flight recorder event spanning one iteration of the evolution
+ */
+@Name("intersectionmanagement.Generation")
+@Label("Generation")
+@Category({"Intersection Management", "Evolution"})
+@Description("One generation of the evolution, from the first evaluation to the best genome being logged")
+@StackTrace(false)
+class GenerationEvent extends Event {
+    @Label("Generation")
+    int generation;
+
+    @Label("Best Score")
+    int bestScore;
+}
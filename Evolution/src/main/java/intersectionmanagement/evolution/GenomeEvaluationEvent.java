@@ -0,0 +1,25 @@
+package intersectionmanagement.evolution;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+Flight recorder event spanning the trials of one candidate, the trial events it contains run on the same thread
+ */
+@Name("intersectionmanagement.GenomeEvaluation")
+@Label("Genome Evaluation")
+@Category({"Intersection Management", "Evolution"})
+@Description("Scoring of one candidate network on all of the trials")
+@StackTrace(false)
+class GenomeEvaluationEvent extends Event {
+    @Label("Generation")
+    int generation;
+
+    @Label("Score")
+    @Description("Colliding pairs over all the trials, only a lower bound when early termination cut it short")
+    int score;
+}
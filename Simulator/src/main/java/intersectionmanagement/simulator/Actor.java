@@ -1,18 +1,26 @@
 package intersectionmanagement.simulator;
 
-import intersectionmanagement.simulator.track.Node;
+import intersectionmanagement.simulator.track.CompiledTrack;
 
 import java.util.ArrayList;
 
 public abstract class Actor {
+    // Stable across runs of the same seed, whatever order actors are stepped in
+    public long id;
+    // Each actor draws from its own stream, split off from the stream of whatever created it
+    public SplitMix64 rng;
+
     public float x;
     public float y;
     public float direction;
     public boolean finished;
+    public boolean collided;
 
     public Simulator simulator;
-    public Node target;
-    public Node currentNode;
+    public CompiledTrack track;
+    // Node ids in track
+    public int target;
+    public int currentNode;
     public boolean solid;
     public float wheelbase;
 
@@ -20,86 +28,110 @@ public abstract class Actor {
     public float radius;
 
     public float targetSpeed;
-
-    public Actor(Simulator simulator, Node firstTarget) {
+    // Whether the simulator skipped this actor's last decide, see Simulator.sleeping
+    public boolean asleep;
+
+    // The cell and slot this actor has in the grid, and its state when the grid was last updated or when it joined
+    int gridCell = -1;
+    int gridSlot;
+    long joinOrder;
+    float gridX;
+    float gridY;
+    float gridSpeed;
+    // Position at the start of the step, collisions are tested along the move from it
+    float startX;
+    float startY;
+
+    // Grid version and own state this actor last decided on
+    int decidedVersion = -1;
+    float decidedX;
+    float decidedY;
+    float decidedDirection;
+    int decidedNode;
+
+    public Actor(Simulator simulator, CompiledTrack track, int firstTarget, long id, SplitMix64 rng) {
         this.simulator = simulator;
+        this.track = track;
+        this.id = id;
+        this.rng = rng;
         target = firstTarget;
         currentNode = firstTarget;
-        x = target.x;
-        y = target.y;
+        x = track.getX(target);
+        y = track.getY(target);
         finished = false;
+        collided = false;
         targetSpeed = 0;
-        direction = (float) Math.atan2(target.nextNodes.get(0).y - y, target.nextNodes.get(0).x - x);
+        int nextNode = track.getSuccessor(target, 0);
+        direction = (float) Math.atan2(track.getY(nextNode) - y, track.getX(nextNode) - x);
+    }
+
+    /*
+    Copies all of an actor's state into a new actor of the given simulator, see Simulator.snapshot
+     */
+    protected Actor(Actor actor, Simulator simulator) {
+        this.simulator = simulator;
+        id = actor.id;
+        rng = actor.rng.copy();
+        x = actor.x;
+        y = actor.y;
+        direction = actor.direction;
+        finished = actor.finished;
+        collided = actor.collided;
+        track = actor.track;
+        target = actor.target;
+        currentNode = actor.currentNode;
+        solid = actor.solid;
+        wheelbase = actor.wheelbase;
+        speed = actor.speed;
+        radius = actor.radius;
+        targetSpeed = actor.targetSpeed;
+        asleep = actor.asleep;
+
+        gridCell = actor.gridCell;
+        gridSlot = actor.gridSlot;
+        joinOrder = actor.joinOrder;
+        gridX = actor.gridX;
+        gridY = actor.gridY;
+        gridSpeed = actor.gridSpeed;
+
+        decidedVersion = actor.decidedVersion;
+        decidedX = actor.decidedX;
+        decidedY = actor.decidedY;
+        decidedDirection = actor.decidedDirection;
+        decidedNode = actor.decidedNode;
     }
 
-    void moveTowardsTarget() {
-        float targetAngle = (float) Math.atan2(target.y - y, target.x - x);
-        float diffAngle = targetAngle - direction;
-        float diffAngle2 = (targetAngle + (float) (Math.PI*2)) - direction;
-        float diffAngle3 = (targetAngle - (float) (Math.PI*2)) - direction;
-        float endDiffAngle = diffAngle;
-
-        if (Math.abs(diffAngle2) < Math.abs(endDiffAngle)) {
-            endDiffAngle = diffAngle2;
-        }
-        if (Math.abs(diffAngle3) < Math.abs(endDiffAngle)) {
-            endDiffAngle = diffAngle3;
-        }
-
-
-        float turn;
-        if (Math.abs(endDiffAngle) < Utility.CAR_TURN_MAX) {
-            turn = endDiffAngle;
-        } else {
-            turn = (endDiffAngle/Math.abs(endDiffAngle)) * Utility.CAR_TURN_MAX;
-        }
-
-        turn += getTurnModifier();
-        if (turn > Utility.CAR_TURN_MAX) {
-            turn = Utility.CAR_TURN_MAX;
-        } else if (turn < Utility.CAR_TURN_MAX*-1) {
-            turn = -1*Utility.CAR_TURN_MAX;
-        }
-
-        float rearX = (float) (x - (wheelbase/2) * Math.cos(direction));
-        float rearY = (float) (y - (wheelbase/2) * Math.sin(direction));
-        float frontX = (float) (x + (wheelbase/2) * Math.cos(direction));
-        float frontY = (float) (y + (wheelbase/2) * Math.sin(direction));
-
-        rearX += (speed * Math.cos(direction));
-        rearY += (speed * Math.sin(direction));
-
-        frontX += (speed * Math.cos(direction+turn));
-        frontY += (speed * Math.sin(direction+turn));
-
-        x = (float) ((rearX+frontX)/2.0);
-        y = (float) ((rearY+frontY)/2.0);
-
-        direction = (float) Math.atan2(frontY-rearY, frontX-rearX);
-
-        if (direction > Math.PI) {
-            direction -= Math.PI*2;
-        } else if (direction < -1*Math.PI) {
-            direction += Math.PI*2;
-        }
-
-        if (distanceToTarget() < radius) {
-            if (target.nextNodes.size() > 0) {
-                int nextNode = simulator.getRNG().nextInt(target.nextNodes.size());
-                currentNode = target;
-                target = target.nextNodes.get(nextNode);
-            } else {
-                finished = true;
-            }
-        }
+    /*
+    Returns a copy of this actor belonging to the given simulator
+     */
+    public abstract Actor copy(Simulator simulator);
+
+    public void step(ArrayList<Actor> actorArray) {
+        decide(actorArray);
+        act();
     }
 
-    public void step(ArrayList<Actor> actorArray) {}
+    /*
+    Reads the surroundings and picks the controls for this step
+    Must only change this actor's own state, so the array engine can run it for many actors in parallel
+     */
+    public void decide(ArrayList<Actor> actorArray) {}
+
+    /*
+    Whether decide only depends on this actor's position, direction and current node and on the surrounding actors'
+    positions, sizes and speeds, so the decision can be kept as long as none of them change
+     */
+    public boolean canSleep() {return false;}
+
+    /*
+    Applies the decided controls, always run sequentially in actorArray order
+     */
+    public void act() {}
 
     public float getTurnModifier() {return 0;}
 
     public float distanceToTarget() {
-        return Utility.distance(x, y, target.x, target.y);
+        return Utility.distance(x, y, track.getX(target), track.getY(target));
     }
 
 }
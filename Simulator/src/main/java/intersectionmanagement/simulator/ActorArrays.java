@@ -0,0 +1,386 @@
+package intersectionmanagement.simulator;
+
+import intersectionmanagement.simulator.track.CompiledTrack;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/*
+Struct-of-arrays kinematic state of every actor, integrated by both engines
+Slots are in actorArray order, and the Actor objects are kept in sync as views of these arrays
+In a BatchSimulator the arrays are shared by several simulators, whose slots are interleaved
+ */
+public class ActorArrays {
+    public int size;
+    public Actor[] actors;
+
+    public float[] x;
+    public float[] y;
+    public float[] direction;
+    // Unit vector of direction, only kept up to date by the fast kinematics
+    public float[] headingX;
+    public float[] headingY;
+    public float[] speed;
+    public float[] turn;
+    public float[] wheelbase;
+    public float[] radius;
+    public boolean[] finished;
+    // Cars and pedestrians run on different tracks, target and currentNode are node ids in the slot's track
+    public CompiledTrack[] track;
+    public int[] target;
+    public int[] currentNode;
+
+    public ActorArrays(int capacity) {
+        size = 0;
+        actors = new Actor[capacity];
+        x = new float[capacity];
+        y = new float[capacity];
+        direction = new float[capacity];
+        headingX = new float[capacity];
+        headingY = new float[capacity];
+        speed = new float[capacity];
+        turn = new float[capacity];
+        wheelbase = new float[capacity];
+        radius = new float[capacity];
+        finished = new boolean[capacity];
+        track = new CompiledTrack[capacity];
+        target = new int[capacity];
+        currentNode = new int[capacity];
+    }
+
+    /*
+    Copies the arrays, with each actor replaced by its copy
+     */
+    public ActorArrays(ActorArrays arrays, Map<Actor, Actor> copies) {
+        size = arrays.size;
+        actors = new Actor[arrays.actors.length];
+        for (int i = 0; i < size; i++) {
+            actors[i] = copies.get(arrays.actors[i]);
+        }
+        x = arrays.x.clone();
+        y = arrays.y.clone();
+        direction = arrays.direction.clone();
+        headingX = arrays.headingX.clone();
+        headingY = arrays.headingY.clone();
+        speed = arrays.speed.clone();
+        turn = arrays.turn.clone();
+        wheelbase = arrays.wheelbase.clone();
+        radius = arrays.radius.clone();
+        finished = arrays.finished.clone();
+        track = arrays.track.clone();
+        target = arrays.target.clone();
+        currentNode = arrays.currentNode.clone();
+    }
+
+    public void add(Actor actor) {
+        if (size == actors.length) {
+            grow();
+        }
+        actors[size] = actor;
+        x[size] = actor.x;
+        y[size] = actor.y;
+        direction[size] = actor.direction;
+        headingX[size] = (float) Math.cos(actor.direction);
+        headingY[size] = (float) Math.sin(actor.direction);
+        speed[size] = actor.speed;
+        turn[size] = actor.getTurnModifier();
+        wheelbase[size] = actor.wheelbase;
+        radius[size] = actor.radius;
+        finished[size] = actor.finished;
+        track[size] = actor.track;
+        target[size] = actor.target;
+        currentNode[size] = actor.currentNode;
+        size++;
+    }
+
+    /*
+    Removes the slots of finished and collided actors, keeping the remaining slots in order
+     */
+    public void retire() {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            Actor actor = actors[i];
+            if (actor.finished || actor.collided) {
+                continue;
+            }
+            if (kept != i) {
+                copySlot(this, i, kept);
+            }
+            kept++;
+        }
+        Arrays.fill(actors, kept, size, null);
+        Arrays.fill(track, kept, size, null);
+        size = kept;
+    }
+
+    /*
+    Appends the slots of another set of arrays after these ones, in the same order
+     */
+    public void addAll(ActorArrays arrays) {
+        for (int i = 0; i < arrays.size; i++) {
+            if (size == actors.length) {
+                grow();
+            }
+            copySlot(arrays, i, size);
+            size++;
+        }
+    }
+
+    /*
+    Moves the slots of one simulator's actors out into a new set of arrays
+    The remaining slots and the moved ones both keep their order
+     */
+    public ActorArrays extract(Simulator simulator) {
+        ActorArrays extracted = new ActorArrays(64);
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (actors[i].simulator == simulator) {
+                if (extracted.size == extracted.actors.length) {
+                    extracted.grow();
+                }
+                extracted.copySlot(this, i, extracted.size);
+                extracted.size++;
+            } else {
+                if (kept != i) {
+                    copySlot(this, i, kept);
+                }
+                kept++;
+            }
+        }
+        Arrays.fill(actors, kept, size, null);
+        Arrays.fill(track, kept, size, null);
+        size = kept;
+        return extracted;
+    }
+
+    private void copySlot(ActorArrays arrays, int from, int to) {
+        actors[to] = arrays.actors[from];
+        x[to] = arrays.x[from];
+        y[to] = arrays.y[from];
+        direction[to] = arrays.direction[from];
+        headingX[to] = arrays.headingX[from];
+        headingY[to] = arrays.headingY[from];
+        speed[to] = arrays.speed[from];
+        turn[to] = arrays.turn[from];
+        wheelbase[to] = arrays.wheelbase[from];
+        radius[to] = arrays.radius[from];
+        finished[to] = arrays.finished[from];
+        track[to] = arrays.track[from];
+        target[to] = arrays.target[from];
+        currentNode[to] = arrays.currentNode[from];
+    }
+
+    /*
+    Copies the controls the actors decided on this step from the views
+     */
+    public void readControls(int from, int to) {
+        for (int i = from; i < to; i++) {
+            Actor actor = actors[i];
+            speed[i] = actor.speed;
+            turn[i] = actor.getTurnModifier();
+        }
+    }
+
+    /*
+    Moves the actors dt base steps at their current speeds
+     */
+    public void integrate(int from, int to, Simulator.Kinematics kinematics, float dt) {
+        if (kinematics == Simulator.Kinematics.FAST) {
+            for (int i = from; i < to; i++) {
+                integrateFast(i, dt);
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                integrateExact(i, dt);
+            }
+        }
+    }
+
+    /*
+    Moves the actor with a bicycle model, steering towards its target node plus its own turn control
+     */
+    private void integrateExact(int i, float dt) {
+        float startX = x[i];
+        float startY = y[i];
+        float targetNodeX = track[i].getX(target[i]);
+        float targetNodeY = track[i].getY(target[i]);
+        float targetAngle = (float) Math.atan2(targetNodeY - y[i], targetNodeX - x[i]);
+        float diffAngle = targetAngle - direction[i];
+        float diffAngle2 = (targetAngle + (float) (Math.PI*2)) - direction[i];
+        float diffAngle3 = (targetAngle - (float) (Math.PI*2)) - direction[i];
+        float endDiffAngle = diffAngle;
+
+        if (Math.abs(diffAngle2) < Math.abs(endDiffAngle)) {
+            endDiffAngle = diffAngle2;
+        }
+        if (Math.abs(diffAngle3) < Math.abs(endDiffAngle)) {
+            endDiffAngle = diffAngle3;
+        }
+
+        float steer;
+        if (Math.abs(endDiffAngle) < Utility.CAR_TURN_MAX) {
+            steer = endDiffAngle;
+        } else {
+            steer = (endDiffAngle/Math.abs(endDiffAngle)) * Utility.CAR_TURN_MAX;
+        }
+
+        steer += turn[i];
+        if (steer > Utility.CAR_TURN_MAX) {
+            steer = Utility.CAR_TURN_MAX;
+        } else if (steer < Utility.CAR_TURN_MAX*-1) {
+            steer = -1*Utility.CAR_TURN_MAX;
+        }
+
+        double cos = Math.cos(direction[i]);
+        double sin = Math.sin(direction[i]);
+        float rearX = (float) (x[i] - (wheelbase[i]/2) * cos);
+        float rearY = (float) (y[i] - (wheelbase[i]/2) * sin);
+        float frontX = (float) (x[i] + (wheelbase[i]/2) * cos);
+        float frontY = (float) (y[i] + (wheelbase[i]/2) * sin);
+
+        float distance = speed[i]*dt;
+        rearX += (distance * cos);
+        rearY += (distance * sin);
+
+        frontX += (distance * Math.cos(direction[i]+steer));
+        frontY += (distance * Math.sin(direction[i]+steer));
+
+        x[i] = (float) ((rearX+frontX)/2.0);
+        y[i] = (float) ((rearY+frontY)/2.0);
+
+        float newDirection = (float) Math.atan2(frontY-rearY, frontX-rearX);
+        if (newDirection > Math.PI) {
+            newDirection -= Math.PI*2;
+        } else if (newDirection < -1*Math.PI) {
+            newDirection += Math.PI*2;
+        }
+        direction[i] = newDirection;
+
+        if (Utility.distance(x[i], y[i], targetNodeX, targetNodeY) < radius[i]
+                || passes(startX, startY, x[i], y[i], targetNodeX, targetNodeY, radius[i])) {
+            nextTarget(i);
+        }
+    }
+
+    /*
+    The same model using the heading unit vector instead of the direction angle
+    The only trig left is polynomial, see FastTrig for the error bounds, and distances are compared squared
+     */
+    private void integrateFast(int i, float dt) {
+        float startX = x[i];
+        float startY = y[i];
+        float headingCos = headingX[i];
+        float headingSin = headingY[i];
+        float targetNodeX = track[i].getX(target[i]);
+        float targetNodeY = track[i].getY(target[i]);
+        float targetX = targetNodeX - x[i];
+        float targetY = targetNodeY - y[i];
+
+        // Angle from the heading to the target, already wrapped to [-pi, pi]
+        float endDiffAngle = FastTrig.atan2(headingCos*targetY - headingSin*targetX, headingCos*targetX + headingSin*targetY);
+
+        float steer;
+        if (Math.abs(endDiffAngle) < Utility.CAR_TURN_MAX) {
+            steer = endDiffAngle;
+        } else {
+            steer = Math.signum(endDiffAngle) * Utility.CAR_TURN_MAX;
+        }
+
+        steer += turn[i];
+        if (steer > Utility.CAR_TURN_MAX) {
+            steer = Utility.CAR_TURN_MAX;
+        } else if (steer < Utility.CAR_TURN_MAX*-1) {
+            steer = -1*Utility.CAR_TURN_MAX;
+        }
+
+        float steerCos = FastTrig.cos(steer);
+        float steerSin = FastTrig.sin(steer);
+        float halfWheelbase = wheelbase[i]/2;
+        float distance = speed[i]*dt;
+        float rearX = x[i] - halfWheelbase*headingCos + distance*headingCos;
+        float rearY = y[i] - halfWheelbase*headingSin + distance*headingSin;
+        float frontX = x[i] + halfWheelbase*headingCos + distance*(headingCos*steerCos - headingSin*steerSin);
+        float frontY = y[i] + halfWheelbase*headingSin + distance*(headingSin*steerCos + headingCos*steerSin);
+
+        x[i] = (rearX+frontX)*0.5f;
+        y[i] = (rearY+frontY)*0.5f;
+
+        float axleX = frontX - rearX;
+        float axleY = frontY - rearY;
+        float axleLength = (float) Math.sqrt(axleX*axleX + axleY*axleY);
+        if (axleLength > 0) {
+            headingX[i] = axleX/axleLength;
+            headingY[i] = axleY/axleLength;
+        }
+        direction[i] = FastTrig.atan2(headingY[i], headingX[i]);
+
+        float distanceX = targetNodeX - x[i];
+        float distanceY = targetNodeY - y[i];
+        if (distanceX*distanceX + distanceY*distanceY < radius[i]*radius[i]
+                || passes(startX, startY, x[i], y[i], targetNodeX, targetNodeY, radius[i])) {
+            nextTarget(i);
+        }
+    }
+
+    /*
+    Whether a straight move came within radius of a node on the way, so a long step cannot skip over its target
+     */
+    private static boolean passes(float startX, float startY, float endX, float endY, float nodeX, float nodeY,
+                                  float radius) {
+        float moveX = endX - startX;
+        float moveY = endY - startY;
+        float moveLengthSquared = moveX*moveX + moveY*moveY;
+        if (moveLengthSquared == 0) {
+            return false;
+        }
+        float along = ((nodeX - startX)*moveX + (nodeY - startY)*moveY)/moveLengthSquared;
+        along = Math.max(0, Math.min(1, along));
+        float offsetX = startX + along*moveX - nodeX;
+        float offsetY = startY + along*moveY - nodeY;
+        return offsetX*offsetX + offsetY*offsetY < radius*radius;
+    }
+
+    private void nextTarget(int i) {
+        int successors = track[i].getSuccessorCount(target[i]);
+        if (successors > 0) {
+            int nextNode = actors[i].rng.nextInt(successors);
+            currentNode[i] = target[i];
+            target[i] = track[i].getSuccessor(target[i], nextNode);
+        } else {
+            finished[i] = true;
+        }
+    }
+
+    /*
+    Copies the integrated state back into the views
+     */
+    public void writeViews(int from, int to) {
+        for (int i = from; i < to; i++) {
+            Actor actor = actors[i];
+            actor.x = x[i];
+            actor.y = y[i];
+            actor.direction = direction[i];
+            actor.target = target[i];
+            actor.currentNode = currentNode[i];
+            actor.finished = finished[i];
+        }
+    }
+
+    private void grow() {
+        int capacity = actors.length*2;
+        actors = Arrays.copyOf(actors, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        direction = Arrays.copyOf(direction, capacity);
+        headingX = Arrays.copyOf(headingX, capacity);
+        headingY = Arrays.copyOf(headingY, capacity);
+        speed = Arrays.copyOf(speed, capacity);
+        turn = Arrays.copyOf(turn, capacity);
+        wheelbase = Arrays.copyOf(wheelbase, capacity);
+        radius = Arrays.copyOf(radius, capacity);
+        finished = Arrays.copyOf(finished, capacity);
+        track = Arrays.copyOf(track, capacity);
+        target = Arrays.copyOf(target, capacity);
+        currentNode = Arrays.copyOf(currentNode, capacity);
+    }
+}
@@ -0,0 +1,177 @@
+package intersectionmanagement.simulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+Steps several array engine simulators in lockstep, with the kinematic state of all of them in one ActorArrays
+Every world runs the same phases it would on its own, only the integration and retirement loops are shared, so each
+world ends up exactly where stepping it alone would have taken it
+ */
+public class BatchSimulator {
+    private final Simulator[] worlds;
+    private final boolean[] running;
+    private int runningCount;
+    private final Simulator.Kinematics kinematics;
+    private final float dt;
+    private final ActorArrays actorState;
+    // When set, the decide phase of every world runs on this pool
+    public ForkJoinPool pool;
+    // When set, records the integration shared by all worlds, each world records its other phases in its own metrics
+    public StepMetrics metrics;
+
+    private final ArrayList<Actor> surroundingActors;
+    // Start of each running world's actors in the decide phase, which runs over all worlds as one range
+    private final int[] decideStart;
+
+    public BatchSimulator(List<Simulator> worlds) {
+        if (worlds.isEmpty()) {
+            throw new IllegalArgumentException("A batch needs at least one simulator");
+        }
+        this.worlds = worlds.toArray(new Simulator[0]);
+        running = new boolean[this.worlds.length];
+        kinematics = this.worlds[0].kinematics;
+        dt = this.worlds[0].getDt();
+        actorState = new ActorArrays(64);
+        for (int w = 0; w < this.worlds.length; w++) {
+            Simulator world = this.worlds[w];
+            if (world.engine != Simulator.Engine.ARRAY) {
+                throw new IllegalArgumentException("Only array engine simulators can be batched");
+            }
+            if (world.kinematics != kinematics) {
+                throw new IllegalArgumentException("Batched simulators must all use the same kinematics");
+            }
+            if (world.getDt() != dt) {
+                throw new IllegalArgumentException("Batched simulators must all use the same dt");
+            }
+            for (int v = 0; v < w; v++) {
+                if (this.worlds[v] == world) {
+                    throw new IllegalArgumentException("A simulator can only be in a batch once");
+                }
+            }
+            actorState.addAll(world.actorState);
+            world.actorState = actorState;
+            running[w] = true;
+        }
+        runningCount = this.worlds.length;
+        surroundingActors = new ArrayList<>();
+        decideStart = new int[this.worlds.length + 1];
+    }
+
+    public int getWorldCount() {
+        return worlds.length;
+    }
+
+    public Simulator getWorld(int world) {
+        return worlds[world];
+    }
+
+    public boolean isRunning(int world) {
+        return running[world];
+    }
+
+    public int getRunningCount() {
+        return runningCount;
+    }
+
+    /*
+    Takes a world out of the batch, it keeps its state and can go on stepping on its own
+     */
+    public void stop(int world) {
+        if (running[world]) {
+            worlds[world].actorState = actorState.extract(worlds[world]);
+            running[world] = false;
+            runningCount--;
+        }
+    }
+
+    /*
+    Steps every running world once, in the phase order of Simulator.step
+     */
+    public void step() {
+        for (int w = 0; w < worlds.length; w++) {
+            if (running[w]) {
+                worlds[w].startStep();
+            }
+        }
+
+        if (pool != null) {
+            for (int w = 0; w < worlds.length; w++) {
+                decideStart[w + 1] = decideStart[w] + (running[w] ? worlds[w].actorArray.size() : 0);
+            }
+            pool.invoke(new DecideTask(0, decideStart[worlds.length]));
+        } else {
+            for (int w = 0; w < worlds.length; w++) {
+                if (running[w]) {
+                    worlds[w].decide(0, worlds[w].actorArray.size(), surroundingActors);
+                }
+            }
+        }
+
+        for (int w = 0; w < worlds.length; w++) {
+            if (running[w]) {
+                worlds[w].act();
+            }
+        }
+        long start = metrics != null ? System.nanoTime() : 0;
+        actorState.readControls(0, actorState.size);
+        actorState.integrate(0, actorState.size, kinematics, dt);
+        actorState.writeViews(0, actorState.size);
+        if (metrics != null) {
+            metrics.add(StepMetrics.Phase.INTEGRATION, System.nanoTime() - start);
+        }
+
+        for (int w = 0; w < worlds.length; w++) {
+            if (running[w]) {
+                worlds[w].countFinished();
+                worlds[w].collide();
+            }
+        }
+
+        actorState.retire();
+        for (int w = 0; w < worlds.length; w++) {
+            if (running[w]) {
+                worlds[w].addNewActorState();
+                worlds[w].finishStep();
+            }
+        }
+    }
+
+    /*
+    Runs the decide phase for a range of the running worlds' actors, taken one world after another
+    Each world's decide only reads its own grid and actors, so worlds can be split up like the actors of one world
+     */
+    private class DecideTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int THRESHOLD = 16;
+
+        private final int from;
+        private final int to;
+
+        DecideTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                ArrayList<Actor> surroundingActors = Simulator.DECIDE_BUFFER.get();
+                for (int w = 0; w < worlds.length; w++) {
+                    int start = Math.max(from, decideStart[w]);
+                    int end = Math.min(to, decideStart[w + 1]);
+                    if (start < end) {
+                        worlds[w].decide(start - decideStart[w], end - decideStart[w], surroundingActors);
+                    }
+                }
+                // Left filled, the pool's threads would keep these actors and their worlds alive
+                surroundingActors.clear();
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new DecideTask(from, middle), new DecideTask(middle, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package intersectionmanagement.simulator;
+
+/*
+Polynomial trig approximations for the fast kinematics, all in float
+atan2 is within 2e-6 radians of Math.atan2 everywhere
+sin and cos take angles in [-pi, pi] and are within 1e-6 of Math.sin and Math.cos there
+ */
+final class FastTrig {
+    private static final float PI = (float) Math.PI;
+    private static final float HALF_PI = (float) (Math.PI/2);
+
+    private FastTrig() {}
+
+    static float atan2(float y, float x) {
+        float absX = Math.abs(x);
+        float absY = Math.abs(y);
+        if (absX == 0 && absY == 0) {
+            return 0;
+        }
+
+        // atan on [0, 1], the rest of the circle follows from symmetry
+        float ratio = Math.min(absX, absY) / Math.max(absX, absY);
+        float square = ratio*ratio;
+        float angle = (((((-0.01172120f*square + 0.05265332f)*square - 0.11643287f)*square
+                + 0.19354346f)*square - 0.33262347f)*square + 0.99997726f)*ratio;
+
+        if (absY > absX) {
+            angle = HALF_PI - angle;
+        }
+        if (x < 0) {
+            angle = PI - angle;
+        }
+        if (y < 0) {
+            angle = -angle;
+        }
+        return angle;
+    }
+
+    static float sin(float angle) {
+        // sin(x) = sin(pi - x) folds the argument into [-pi/2, pi/2]
+        if (angle > HALF_PI) {
+            angle = PI - angle;
+        } else if (angle < -HALF_PI) {
+            angle = -PI - angle;
+        }
+        float square = angle*angle;
+        return angle*(1 + square*(-1f/6 + square*(1f/120 + square*(-1f/5040 + square*(1f/362880 + square*(-1f/39916800))))));
+    }
+
+    static float cos(float angle) {
+        // cos(x) = -cos(pi - |x|) folds the argument into [-pi/2, pi/2]
+        float sign = 1;
+        angle = Math.abs(angle);
+        if (angle > HALF_PI) {
+            angle = PI - angle;
+            sign = -1;
+        }
+        float square = angle*angle;
+        return sign*(1 + square*(-1f/2 + square*(1f/24 + square*(-1f/720 + square*(1f/40320 + square*(-1f/3628800 + square*(1f/479001600)))))));
+    }
+}
@@ -2,126 +2,664 @@ package intersectionmanagement.simulator;
 
 import intersectionmanagement.simulator.car.Car;
 import intersectionmanagement.simulator.pedestrian.Pedestrian;
+import intersectionmanagement.simulator.spawner.SpawnScheduler;
+import intersectionmanagement.simulator.spawner.Spawner;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class Simulator {
+    /*
+    OBJECT steps each actor in turn, so later actors see the moves of earlier ones
+    ARRAY steps in two phases: every actor decides from the same frozen state, which can run in parallel, then all
+    actors act and are moved in one loop over the primitive arrays in ActorArrays
+     */
+    public enum Engine {OBJECT, ARRAY}
+
+    /*
+    EXACT is the original double precision kinematics
+    FAST keeps a unit heading vector, uses the polynomial trig in FastTrig and compares squared distances
+     */
+    public enum Kinematics {EXACT, FAST}
+
     public static final int grid = 50;
+    /*
+    Largest dt checked to give the same traffic as steps of 1, beyond it cars overshoot turns and pass nodes they
+    should have reached, so far fewer of them finish
+    The broad phase alone would hold up to MAX_BROAD_PHASE_DT
+     */
+    public static final float MAX_DT = 4;
+    /*
+    Colliding actors are only found in the same or adjacent cells, so a cell has to be at least as wide as two of the
+    largest actors plus both of their moves in a step
+    With 8 unit cells, cars of radius 1 and a top speed of 0.277 that is about 10.8 base steps
+     */
+    static final float MAX_BROAD_PHASE_DT = (400f/grid - 2*Utility.CAR_RADIUS)/(2*Utility.CAR_SPEED_MAX);
+    // Grid coordinates run from -1 to grid inclusive, so there is a border cell on every side
+    private static final int gridCells = grid + 2;
+    // Neighbour cells are visited in this order, which decides the order of the surrounding actors
+    private static final int[] neighbourOffsetX = {0, -1, 0, -1, 1, 0, 1, -1, 1};
+    private static final int[] neighbourOffsetY = {0, 0, -1, -1, 0, 1, 1, 1, -1};
+    // Half of the neighbouring cells, so every pair of adjacent cells is only visited from one side
+    private static final int[] forwardOffsetX = {1, -1, 0, 1};
+    private static final int[] forwardOffsetY = {0, 1, 1, 1};
 
     public ArrayList<Actor> actorArray;
     public ArrayList<Car> carArray;
     public ArrayList<Pedestrian> pedestrianArray;
     public ArrayList<Actor> newActorBuffer;
 
+    // Each colliding pair adds two, one for each actor, so collisions/2 is the number of colliding pairs
     public int collisions = 0;
     public int finishedCars = 0;
     public int spawnedCars = 0;
+    // Number of steps run so far
+    public int stepCount = 0;
+    // Set when a trial stopped the simulation before all of its steps were run
+    public boolean stoppedEarly = false;
+
+    public SpawnScheduler spawnScheduler;
+
+    // Root stream of the trial, spawners split their own streams off it in the order they are created
+    public SplitMix64 rng;
+    private long nextSpawnerId = 1;
 
-    public Random rng;
+    public Engine engine;
+    public Kinematics kinematics = Kinematics.EXACT;
+    /*
+    Length of a step in base steps, the step length speeds, accelerations and spawner times are given in
+    Actors move speed*dt each step, and collisions are tested along the whole move so larger steps miss none
+     */
+    private float dt = 1;
+    public ActorArrays actorState;
+    // When set, the array engine runs the decide phase on this pool
+    public ForkJoinPool pool;
+    /*
+    When set, the array engine skips the decide of actors that can sleep while neither they nor any actor in their
+    3x3 block of cells has changed since they last decided, and they keep their last controls
+    The object engine moves actors while others are still deciding, so it always decides
+     */
+    public boolean sleeping = false;
+    // When set, every step records the time spent in each phase, see StepMetrics
+    public StepMetrics metrics;
 
-    public HashMap<Integer, HashMap<Integer, ArrayList<Actor>>> actorGrid;
+    // Uniform grid of the solid actors, kept up to date by moving actors only when they change cell
+    // The actors of cell c are cellActors[c][0] to cellActors[c][cellCount[c]-1], in actorArray order
+    private Actor[][] cellActors;
+    private int[] cellCount;
+    // Cells whose actors fell out of actorArray order while the grid was updated
+    private int[] unsortedCells;
+    private int unsortedCellCount;
+    private boolean[] cellUnsorted;
+    // Retired actors stay in the grid until it is next updated, like they did when it was rebuilt every step
+    private ArrayList<Actor> leavingActors;
+    // Order actors joined actorArray in, which is their order in it
+    private long nextJoinOrder = 0;
+    // Version of each grid update, and the last version each cell's actors or their states changed on
+    private int gridVersion;
+    private int[] cellVersion;
+    private ArrayList<Actor> surroundingActors;
+    /*
+    Neighbour buffer of each thread running decide tasks, a thread runs one task at a time so every simulator and
+    batch can share it
+    Tasks empty it when they are done, or the pool's threads would keep the last actors and their simulators alive
+     */
+    static final ThreadLocal<ArrayList<Actor>> DECIDE_BUFFER = ThreadLocal.withInitial(ArrayList::new);
 
     public Simulator(long rngSeed) {
-        rng = new Random(rngSeed);
+        this(rngSeed, Engine.OBJECT);
+    }
+
+    public Simulator(long rngSeed, Engine engine) {
+        rng = new SplitMix64(rngSeed);
+        this.engine = engine;
+        actorState = new ActorArrays(64);
         actorArray = new ArrayList<>();
         carArray = new ArrayList<>();
         pedestrianArray = new ArrayList<>();
         newActorBuffer = new ArrayList<>();
+        spawnScheduler = new SpawnScheduler();
+
+        cellActors = new Actor[gridCells*gridCells][];
+        cellCount = new int[gridCells*gridCells];
+        unsortedCells = new int[gridCells*gridCells];
+        cellUnsorted = new boolean[gridCells*gridCells];
+        leavingActors = new ArrayList<>();
+        cellVersion = new int[gridCells*gridCells];
+        surroundingActors = new ArrayList<>();
+    }
 
-        actorGrid = new HashMap<>();
-        for (int i = -1; i < grid+1; i++) {
-            actorGrid.put(i, new HashMap<>());
-            for (int j = -1; j < grid+1; j++) {
-                actorGrid.get(i).put(j, new ArrayList<>());
+    /*
+    Deep copy of the whole state between steps, used both to take a snapshot and to restore one
+    Stepping the copy gives exactly what stepping this simulator would, and neither affects the other
+    Tracks, controllers and the pool are shared, the copy starts without metrics, and everything else is copied
+     */
+    public Simulator snapshot() {
+        return new Simulator(this);
+    }
+
+    private Simulator(Simulator simulator) {
+        // Actors are copied once each, retired actors can still be in the grid until it is next updated
+        Map<Actor, Actor> copies = new IdentityHashMap<>();
+        actorArray = copyActors(simulator.actorArray, copies);
+        carArray = copyActors(simulator.carArray, copies);
+        pedestrianArray = copyActors(simulator.pedestrianArray, copies);
+        newActorBuffer = copyActors(simulator.newActorBuffer, copies);
+        leavingActors = copyActors(simulator.leavingActors, copies);
+
+        collisions = simulator.collisions;
+        finishedCars = simulator.finishedCars;
+        spawnedCars = simulator.spawnedCars;
+        stepCount = simulator.stepCount;
+        stoppedEarly = simulator.stoppedEarly;
+
+        rng = simulator.rng.copy();
+        nextSpawnerId = simulator.nextSpawnerId;
+        spawnScheduler = simulator.spawnScheduler.copy(this);
+
+        engine = simulator.engine;
+        kinematics = simulator.kinematics;
+        dt = simulator.dt;
+        actorState = new ActorArrays(simulator.actorState, copies);
+        pool = simulator.pool;
+        sleeping = simulator.sleeping;
+
+        cellActors = new Actor[gridCells*gridCells][];
+        for (int cell = 0; cell < cellActors.length; cell++) {
+            Actor[] actors = simulator.cellActors[cell];
+            if (actors != null) {
+                cellActors[cell] = new Actor[actors.length];
+                for (int i = 0; i < simulator.cellCount[cell]; i++) {
+                    cellActors[cell][i] = copies.get(actors[i]);
+                }
             }
         }
+        cellCount = simulator.cellCount.clone();
+        unsortedCells = new int[gridCells*gridCells];
+        cellUnsorted = new boolean[gridCells*gridCells];
+        nextJoinOrder = simulator.nextJoinOrder;
+        gridVersion = simulator.gridVersion;
+        cellVersion = simulator.cellVersion.clone();
+        surroundingActors = new ArrayList<>();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Actor> ArrayList<T> copyActors(ArrayList<T> actors, Map<Actor, Actor> copies) {
+        ArrayList<T> copiedActors = new ArrayList<>(actors.size());
+        for (T actor : actors) {
+            Actor copy = copies.get(actor);
+            if (copy == null) {
+                copy = actor.copy(this);
+                copies.put(actor, copy);
+            }
+            copiedActors.add((T) copy);
+        }
+        return copiedActors;
     }
 
     public void step() {
-        ArrayList<Actor> removedActorArray = new ArrayList<>();
+        startStep();
+
+        if (engine == Engine.ARRAY) {
+            if (pool != null) {
+                pool.invoke(new DecideTask(0, actorArray.size()));
+            } else {
+                decide(0, actorArray.size(), surroundingActors);
+            }
+            act();
+            long start = metrics != null ? System.nanoTime() : 0;
+            actorState.readControls(0, actorState.size);
+            actorState.integrate(0, actorState.size, kinematics, dt);
+            actorState.writeViews(0, actorState.size);
+            if (metrics != null) {
+                metrics.add(StepMetrics.Phase.INTEGRATION, System.nanoTime() - start);
+            }
+            countFinished();
+        } else {
+            for (int i = 0; i < actorArray.size(); i++) {
+                Actor actor = actorArray.get(i);
+                actor.step(getActorsFromGrid(actor, surroundingActors));
+                long start = metrics != null ? System.nanoTime() : 0;
+                actorState.readControls(i, i+1);
+                actorState.integrate(i, i+1, kinematics, dt);
+                actorState.writeViews(i, i+1);
+                if (metrics != null) {
+                    metrics.add(StepMetrics.Phase.INTEGRATION, System.nanoTime() - start);
+                }
+                if (actor.finished) {
+                    finishedCars++;
+                }
+            }
+        }
+
+        collide();
+
+        actorState.retire();
+        addNewActorState();
+        finishStep();
+    }
+
+    /*
+    The phases of a step, run in this order
+    The array engine's phases are also run by BatchSimulator, which integrates many simulators in one set of arrays
+     */
+    void startStep() {
+        // Spawned actors join the simulation at the end of the step, like any other new actor
+        long start = metrics != null ? System.nanoTime() : 0;
+        spawnScheduler.spawnDue(getTime(stepCount));
+        if (metrics != null) {
+            metrics.add(StepMetrics.Phase.SPAWN, System.nanoTime() - start);
+        }
+    }
+
+    void decide(int from, int to, ArrayList<Actor> surroundingActors) {
+        for (int i = from; i < to; i++) {
+            decide(actorArray.get(i), surroundingActors);
+        }
+    }
+
+    void act() {
+        for (int i = 0; i < actorArray.size(); i++) {
+            actorArray.get(i).act();
+        }
+    }
 
-        for (Actor actor : actorArray) {
-            actor.step(getActorsFromGrid(actor));
-            actor.moveTowardsTarget();
-            if (actor.finished) {
-                removedActorArray.add(actor);
+    void countFinished() {
+        for (int i = 0; i < actorArray.size(); i++) {
+            if (actorArray.get(i).finished) {
                 finishedCars++;
             }
         }
+    }
 
+    void collide() {
+        long start = metrics != null ? System.nanoTime() : 0;
         putActorsInGrid();
+        if (metrics != null) {
+            long gridEnd = System.nanoTime();
+            metrics.add(StepMetrics.Phase.GRID, gridEnd - start);
+            start = gridEnd;
+        }
+
+        detectCollisions();
+        if (metrics != null) {
+            metrics.add(StepMetrics.Phase.COLLISIONS, System.nanoTime() - start);
+        }
 
-        for (Actor actor : actorArray) {
-            if (detectCollision(actor)) {
-                removedActorArray.add(actor);
-                collisions++;
+        // Finished and collided actors will be retired, but stay in the grid until it is next updated
+        for (int i = 0; i < actorArray.size(); i++) {
+            Actor actor = actorArray.get(i);
+            if ((actor.finished || actor.collided) && actor.gridCell >= 0) {
+                leavingActors.add(actor);
             }
         }
+    }
+
+    void addNewActorState() {
+        for (int i = 0; i < newActorBuffer.size(); i++) {
+            actorState.add(newActorBuffer.get(i));
+        }
+    }
+
+    void finishStep() {
+        // Finished and collided actors are retired in place, keeping the order of the remaining actors
+        removeRetired(actorArray);
+        removeRetired(carArray);
+        removeRetired(pedestrianArray);
 
         // Some actors add new actors, so we have to use a buffer to avoid modifying the actor array while we're looping through it to step
+        for (int i = 0; i < newActorBuffer.size(); i++) {
+            Actor actor = newActorBuffer.get(i);
+            actor.joinOrder = nextJoinOrder++;
+            // Their first move is swept from where they joined
+            actor.gridX = actor.x;
+            actor.gridY = actor.y;
+        }
         actorArray.addAll(newActorBuffer);
         newActorBuffer.clear();
-        actorArray.removeAll(removedActorArray);
-        carArray.removeAll(removedActorArray);
-        pedestrianArray.removeAll(removedActorArray);
-    }
-
-    private ArrayList<Actor> getActorsFromGrid(Actor actor) {
-        int x = (int) Math.floor(actor.x/(400./grid));
-        int y = (int) Math.floor(actor.y/(400./grid));
-
-        ArrayList<Actor> surroundingActors = new ArrayList<>();
-        surroundingActors.addAll(actorGrid.get(x).get(y));
-        surroundingActors.addAll(actorGrid.get(x-1).get(y));
-        surroundingActors.addAll(actorGrid.get(x).get(y-1));
-        surroundingActors.addAll(actorGrid.get(x-1).get(y-1));
-        surroundingActors.addAll(actorGrid.get(x+1).get(y));
-        surroundingActors.addAll(actorGrid.get(x).get(y+1));
-        surroundingActors.addAll(actorGrid.get(x+1).get(y+1));
-        surroundingActors.addAll(actorGrid.get(x-1).get(y+1));
-        surroundingActors.addAll(actorGrid.get(x+1).get(y-1));
+        stepCount++;
+        if (metrics != null) {
+            metrics.addStep(actorArray.size());
+        }
+    }
 
+    private static <T extends Actor> void removeRetired(ArrayList<T> actors) {
+        int kept = 0;
+        for (int i = 0; i < actors.size(); i++) {
+            T actor = actors.get(i);
+            if (!actor.finished && !actor.collided) {
+                actors.set(kept, actor);
+                kept++;
+            }
+        }
+        for (int i = actors.size()-1; i >= kept; i--) {
+            actors.remove(i);
+        }
+    }
+
+    /*
+    Decide step of the array engine
+     */
+    private void decide(Actor actor, ArrayList<Actor> surroundingActors) {
+        if (sleeping && actor.canSleep()) {
+            if (isUnchanged(actor)) {
+                actor.asleep = true;
+                return;
+            }
+            actor.decidedVersion = gridVersion;
+            actor.decidedX = actor.x;
+            actor.decidedY = actor.y;
+            actor.decidedDirection = actor.direction;
+            actor.decidedNode = actor.currentNode;
+        }
+        actor.asleep = false;
+        actor.decide(getActorsFromGrid(actor, surroundingActors));
+    }
+
+    private boolean isUnchanged(Actor actor) {
+        if (actor.decidedVersion < 0 || actor.x != actor.decidedX || actor.y != actor.decidedY
+                || actor.direction != actor.decidedDirection || actor.currentNode != actor.decidedNode) {
+            return false;
+        }
+        int x = gridCoordinate(actor.x);
+        int y = gridCoordinate(actor.y);
+        for (int i = 0; i < neighbourOffsetX.length; i++) {
+            int cellX = x + neighbourOffsetX[i];
+            int cellY = y + neighbourOffsetY[i];
+            if (cellX < -1 || cellX > grid || cellY < -1 || cellY > grid) {
+                continue;
+            }
+            if (cellVersion[cellIndex(cellX, cellY)] > actor.decidedVersion) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+    Returns the actors in the 3x3 block of cells around the actor, in the given list
+    The list is reused by the next call, so it must not be kept
+     */
+    private ArrayList<Actor> getActorsFromGrid(Actor actor, ArrayList<Actor> surroundingActors) {
+        long start = metrics != null ? System.nanoTime() : 0;
+        int x = gridCoordinate(actor.x);
+        int y = gridCoordinate(actor.y);
+
+        surroundingActors.clear();
+        for (int i = 0; i < neighbourOffsetX.length; i++) {
+            int cellX = x + neighbourOffsetX[i];
+            int cellY = y + neighbourOffsetY[i];
+            if (cellX < -1 || cellX > grid || cellY < -1 || cellY > grid) {
+                continue;
+            }
+            int cell = cellIndex(cellX, cellY);
+            Actor[] actors = cellActors[cell];
+            for (int j = 0; j < cellCount[cell]; j++) {
+                surroundingActors.add(actors[j]);
+            }
+        }
+
+        if (metrics != null) {
+            metrics.add(StepMetrics.Phase.NEIGHBOURS, System.nanoTime() - start);
+        }
         return surroundingActors;
     }
 
+    /*
+    Brings the grid up to date with actorArray
+    Only actors that left, joined or changed cell touch the cell lists, everyone else is just checked
+     */
     private void putActorsInGrid() {
-        for (int i = -1; i < grid+1; i++) {
-            for (int j = -1; j < grid+1; j++) {
-                actorGrid.get(i).get(j).clear();
+        gridVersion++;
+
+        for (int i = 0; i < leavingActors.size(); i++) {
+            removeFromCell(leavingActors.get(i));
+        }
+        leavingActors.clear();
+
+        for (int i = 0; i < actorArray.size(); i++) {
+            Actor actor = actorArray.get(i);
+            if (!actor.solid) {
+                // Nothing senses or collides with non-solid actors, so they are left out of the grid
+                continue;
             }
+            actor.startX = actor.gridX;
+            actor.startY = actor.gridY;
+            int cell = cellIndex(gridCoordinate(actor.x), gridCoordinate(actor.y));
+            if (cell != actor.gridCell) {
+                if (actor.gridCell >= 0) {
+                    removeFromCell(actor);
+                }
+                addToCell(actor, cell);
+            } else if (actor.x != actor.gridX || actor.y != actor.gridY || actor.speed != actor.gridSpeed) {
+                cellVersion[cell] = gridVersion;
+            }
+            actor.gridX = actor.x;
+            actor.gridY = actor.y;
+            actor.gridSpeed = actor.speed;
         }
-        for (Actor actor : actorArray) {
-            int x = (int) Math.floor(actor.x/(400./grid));
-            int y = (int) Math.floor(actor.y/(400./grid));
-            actorGrid.get(x).get(y).add(actor);
+
+        for (int i = 0; i < unsortedCellCount; i++) {
+            sortCell(unsortedCells[i]);
         }
+        unsortedCellCount = 0;
     }
 
-    public boolean detectCollision(Actor actor) {
-        for (Actor otherActor : actorArray) {
-            if (actor == otherActor) {
-                continue;
+    private void addToCell(Actor actor, int cell) {
+        Actor[] actors = cellActors[cell];
+        if (actors == null) {
+            actors = new Actor[4];
+            cellActors[cell] = actors;
+        } else if (cellCount[cell] == actors.length) {
+            actors = Arrays.copyOf(actors, actors.length*2);
+            cellActors[cell] = actors;
+        }
+        int slot = cellCount[cell]++;
+        actors[slot] = actor;
+        actor.gridCell = cell;
+        actor.gridSlot = slot;
+        if (slot > 0 && actors[slot-1].joinOrder > actor.joinOrder) {
+            markUnsorted(cell);
+        }
+        cellVersion[cell] = gridVersion;
+    }
+
+    // Fills the actor's slot with the cell's last actor
+    private void removeFromCell(Actor actor) {
+        int cell = actor.gridCell;
+        Actor[] actors = cellActors[cell];
+        int last = --cellCount[cell];
+        if (actor.gridSlot != last) {
+            Actor moved = actors[last];
+            actors[actor.gridSlot] = moved;
+            moved.gridSlot = actor.gridSlot;
+            markUnsorted(cell);
+        }
+        actors[last] = null;
+        actor.gridCell = -1;
+        cellVersion[cell] = gridVersion;
+    }
+
+    private void markUnsorted(int cell) {
+        if (!cellUnsorted[cell]) {
+            cellUnsorted[cell] = true;
+            unsortedCells[unsortedCellCount++] = cell;
+        }
+    }
+
+    /*
+    Puts a cell's actors back in actorArray order, which decides sensor ties
+    Cells hold a handful of actors and are mostly still in order, so insertion sort is enough
+     */
+    private void sortCell(int cell) {
+        cellUnsorted[cell] = false;
+        Actor[] actors = cellActors[cell];
+        for (int i = 1; i < cellCount[cell]; i++) {
+            Actor actor = actors[i];
+            int j = i - 1;
+            while (j >= 0 && actors[j].joinOrder > actor.joinOrder) {
+                actors[j+1] = actors[j];
+                actors[j+1].gridSlot = j+1;
+                j--;
             }
+            actors[j+1] = actor;
+            actor.gridSlot = j+1;
+        }
+    }
+
+    private static int gridCoordinate(float coordinate) {
+        int cell = (int) Math.floor(coordinate/(400./grid));
+        if (cell < -1) {
+            return -1;
+        }
+        if (cell > grid) {
+            return grid;
+        }
+        return cell;
+    }
 
-            if (!actor.solid || !otherActor.solid) {
+    private static int cellIndex(int x, int y) {
+        return (x+1)*gridCells + (y+1);
+    }
+
+    /*
+    Broad phase collision detection over the grid
+    MAX_DT is below MAX_BROAD_PHASE_DT, so cells are at least as wide as two actors plus their moves in a step, and
+    colliding actors are always in the same or adjacent cells
+    Every pair of solid actors in adjacent cells is tested exactly once
+     */
+    private void detectCollisions() {
+        for (int cell = 0; cell < gridCells*gridCells; cell++) {
+            int count = cellCount[cell];
+            if (count == 0) {
                 continue;
             }
+            Actor[] actors = cellActors[cell];
+            int x = cell/gridCells - 1;
+            int y = cell%gridCells - 1;
 
-            if (Utility.distance(actor.x, actor.y, otherActor.x, otherActor.y) < actor.radius + otherActor.radius) {
-                return true;
+            for (int i = 0; i < count; i++) {
+                Actor actor = actors[i];
+                for (int j = i+1; j < count; j++) {
+                    testCollision(actor, actors[j]);
+                }
+                for (int k = 0; k < forwardOffsetX.length; k++) {
+                    int otherX = x + forwardOffsetX[k];
+                    int otherY = y + forwardOffsetY[k];
+                    if (otherX < -1 || otherX > grid || otherY < -1 || otherY > grid) {
+                        continue;
+                    }
+                    int otherCell = cellIndex(otherX, otherY);
+                    Actor[] otherActors = cellActors[otherCell];
+                    for (int j = 0; j < cellCount[otherCell]; j++) {
+                        testCollision(actor, otherActors[j]);
+                    }
+                }
             }
         }
+    }
+
+    private void testCollision(Actor actor, Actor otherActor) {
+        if (Utility.distance(actor.x, actor.y, otherActor.x, otherActor.y) < actor.radius + otherActor.radius
+                || sweptOverlap(actor, otherActor)) {
+            actor.collided = true;
+            otherActor.collided = true;
+            collisions += 2;
+        }
+    }
+
+    /*
+    Whether two actors overlapped at any point of this step, taking both to move in a straight line from their
+    start positions at a constant speed
+    Only the closest approach of the relative move has to be checked
+     */
+    private static boolean sweptOverlap(Actor actor, Actor otherActor) {
+        return sweptOverlap(actor.startX, actor.startY, actor.x, actor.y, otherActor.startX, otherActor.startY,
+                otherActor.x, otherActor.y, actor.radius + otherActor.radius);
+    }
+
+    static boolean sweptOverlap(float startX, float startY, float endX, float endY, float otherStartX,
+                                float otherStartY, float otherEndX, float otherEndY, double reach) {
+        double offsetX = otherStartX - startX;
+        double offsetY = otherStartY - startY;
+        double moveX = (otherEndX - otherStartX) - (endX - startX);
+        double moveY = (otherEndY - otherStartY) - (endY - startY);
+        double moveLengthSquared = moveX*moveX + moveY*moveY;
+        double closest = 0;
+        if (moveLengthSquared > 0) {
+            closest = Math.max(0, Math.min(1, -(offsetX*moveX + offsetY*moveY)/moveLengthSquared));
+        }
+        double closestX = offsetX + closest*moveX;
+        double closestY = offsetY + closest*moveY;
+        return closestX*closestX + closestY*closestY < reach*reach;
+    }
+
+    /*
+    Runs the decide phase for a range of actorArray, splitting it up between the pool's threads
+    Only the grid and the actors' current state are read, and both stay unchanged until every actor has decided
+     */
+    private class DecideTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int THRESHOLD = 16;
+
+        private final int from;
+        private final int to;
+
+        DecideTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
 
-        return false;
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                ArrayList<Actor> surroundingActors = DECIDE_BUFFER.get();
+                decide(from, to, surroundingActors);
+                surroundingActors.clear();
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new DecideTask(from, middle), new DecideTask(middle, to));
+            }
+        }
     }
 
     public void addActor(Actor actor) {
         newActorBuffer.add(actor);
     }
 
+    public float getDt() {
+        return dt;
+    }
+
+    /*
+    Sets the step length, which has to be positive and at most MAX_DT
+     */
+    public void setDt(float dt) {
+        if (!(dt > 0 && dt <= MAX_DT)) {
+            throw new IllegalArgumentException(String.format("dt must be greater than 0 and at most %.2f, not %s", MAX_DT, dt));
+        }
+        this.dt = dt;
+    }
+
+    /*
+    Base steps from the start of the simulation to the start of a step
+     */
+    public int getTime(int step) {
+        return (int) (step*(double) dt);
+    }
+
+    /*
+    A spawner added now first spawns on the next step, the first one an actor added now would be stepped on
+     */
+    public void addSpawner(Spawner spawner) {
+        spawnScheduler.add(spawner, getTime(stepCount + 1));
+    }
+
     public void addCar(Car car) {
         newActorBuffer.add(car);
         carArray.add(car);
+        spawnedCars++;
     }
 
     public void addPedestrian(Pedestrian pedestrian) {
@@ -129,7 +667,18 @@ public class Simulator {
         pedestrianArray.add(pedestrian);
     }
 
-    public Random getRNG() {
+    public SplitMix64 getRNG() {
         return rng;
     }
+
+    /*
+    Spawners are created before the simulation starts, so their ids and streams only depend on the track
+     */
+    public long newSpawnerId() {
+        return nextSpawnerId++;
+    }
+
+    public SplitMix64 newSpawnerRandom() {
+        return rng.split();
+    }
 }
@@ -0,0 +1,121 @@
+package intersectionmanagement.simulator;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Time spent in each phase of Simulator.step, and how many actors the steps had
+A simulator only measures when its metrics are set, otherwise each phase costs one null check
+Phases inside the decide phase can be recorded from the pool's threads, so they are added up in LongAdders
+ */
+public final class StepMetrics {
+    public enum Phase {SPAWN, NEIGHBOURS, SENSING, INFERENCE, INTEGRATION, GRID, COLLISIONS}
+
+    // Bucket 0 counts steps with no actors, bucket b steps with 2^(b-1) to 2^b-1 actors
+    private static final int HISTOGRAM_BUCKETS = 32;
+
+    private final LongAdder[] nanos;
+    private final LongAdder[] counts;
+    private final long[] actorHistogram;
+    private long steps;
+    private long actorSteps;
+
+    public StepMetrics() {
+        nanos = new LongAdder[Phase.values().length];
+        counts = new LongAdder[Phase.values().length];
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i] = new LongAdder();
+            counts[i] = new LongAdder();
+        }
+        actorHistogram = new long[HISTOGRAM_BUCKETS];
+    }
+
+    public void add(Phase phase, long phaseNanos) {
+        nanos[phase.ordinal()].add(phaseNanos);
+        counts[phase.ordinal()].increment();
+    }
+
+    // Called once a step by the thread stepping the simulator
+    public void addStep(int actors) {
+        steps++;
+        actorSteps += actors;
+        actorHistogram[32 - Integer.numberOfLeadingZeros(actors)]++;
+    }
+
+    public long getNanos(Phase phase) {
+        return nanos[phase.ordinal()].sum();
+    }
+
+    public long getCount(Phase phase) {
+        return counts[phase.ordinal()].sum();
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    public long getActorSteps() {
+        return actorSteps;
+    }
+
+    public long[] getActorHistogram() {
+        return actorHistogram.clone();
+    }
+
+    /*
+    Adds another simulator's metrics to these, several threads can merge into the same metrics
+     */
+    public synchronized void merge(StepMetrics metrics) {
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i].add(metrics.nanos[i].sum());
+            counts[i].add(metrics.counts[i].sum());
+        }
+        for (int i = 0; i < actorHistogram.length; i++) {
+            actorHistogram[i] += metrics.actorHistogram[i];
+        }
+        steps += metrics.steps;
+        actorSteps += metrics.actorSteps;
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i].reset();
+            counts[i].reset();
+        }
+        for (int i = 0; i < actorHistogram.length; i++) {
+            actorHistogram[i] = 0;
+        }
+        steps = 0;
+        actorSteps = 0;
+    }
+
+    /*
+    One line with the total time, calls and time per call of every phase, then the actor histogram
+     */
+    public synchronized String summary() {
+        StringBuilder summary = new StringBuilder();
+        long totalNanos = 0;
+        for (LongAdder phaseNanos : nanos) {
+            totalNanos += phaseNanos.sum();
+        }
+        summary.append(String.format("steps %d, actor steps %d, %.0f ns/actor step", steps, actorSteps,
+                actorSteps > 0 ? totalNanos/(double) actorSteps : 0.0));
+        for (Phase phase : Phase.values()) {
+            long phaseNanos = getNanos(phase);
+            long calls = getCount(phase);
+            summary.append(String.format(" | %s %.1f ms %d calls %.0f ns/call", phase.name().toLowerCase(),
+                    phaseNanos/1e6, calls, calls > 0 ? phaseNanos/(double) calls : 0.0));
+        }
+        summary.append(" | actors");
+        for (int i = 0; i < actorHistogram.length; i++) {
+            if (actorHistogram[i] == 0) {
+                continue;
+            }
+            if (i < 2) {
+                summary.append(String.format(" %d:%d", i, actorHistogram[i]));
+            } else {
+                summary.append(String.format(" %d-%d:%d", 1 << (i-1), (1 << i) - 1, actorHistogram[i]));
+            }
+        }
+        return summary.toString();
+    }
+}
@@ -11,11 +11,16 @@ public class Utility {
     public static final float CAR_ACCELERATION = 0.0025f;
     public static final float CAR_BREAKING = 0.004f;
     public static final float CAR_TURN_MAX = 2.0f;
+    public static final float CAR_RADIUS = 1.0f;
 
     public static final float PEDESTRIAN_SPEED = 0.04f;
+    public static final float PEDESTRIAN_RADIUS = 0.5f;
 
     public static float distance(float x1, float y1, float x2, float y2) {
-        return (float) Math.sqrt(Math.pow(x2-x1, 2) + Math.pow(y2-y1, 2));
+        // Squaring in double is exact for float differences, so this matches Math.pow
+        double dx = x2-x1;
+        double dy = y2-y1;
+        return (float) Math.sqrt(dx*dx + dy*dy);
     }
 
     public static String loadResource(String file) throws IOException {
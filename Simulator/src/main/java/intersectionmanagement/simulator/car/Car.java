@@ -2,26 +2,40 @@ package intersectionmanagement.simulator.car;
 
 import intersectionmanagement.simulator.Actor;
 import intersectionmanagement.simulator.Simulator;
+import intersectionmanagement.simulator.SplitMix64;
+import intersectionmanagement.simulator.StepMetrics;
 import intersectionmanagement.simulator.Utility;
 import intersectionmanagement.simulator.control.CarController;
 import intersectionmanagement.simulator.control.HeuristicController;
-import intersectionmanagement.simulator.track.Node;
+import intersectionmanagement.simulator.track.CompiledTrack;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Arrays;
 
 public class Car extends Actor {
     public CarController controller;
     public HeuristicController inactiveController;
     public boolean controllerActive;
-    public List<List<Sensor>> sensorArray;
+    public SensorLayout sensorLayout;
     public float turnControl;
 
-    public Car(Simulator simulator, Node firstTarget, CarController controller) {
-        super(simulator, firstTarget);
+    // Reused every step so sensing and control do not allocate
+    private double[] sensorValues;
+    private double[] inactiveSensorValues;
+    private double[] controls;
+
+    private RaySensorEngine sensorEngine;
+    // Index of the first activated sensor in each row when it was last read, -1 when none was
+    private int[] sensorHits;
+
+    public Car(Simulator simulator, CompiledTrack track, int firstTarget, CarController controller, long id, SplitMix64 rng) {
+        this(simulator, track, firstTarget, controller, SensorLayout.DEFAULT, id, rng);
+    }
+
+    public Car(Simulator simulator, CompiledTrack track, int firstTarget, CarController controller, SensorLayout sensorLayout, long id, SplitMix64 rng) {
+        super(simulator, track, firstTarget, id, rng);
         speed = 0.5f;
-        radius = 1.0f;
+        radius = Utility.CAR_RADIUS;
         solid = true;
         turnControl = 0;
         wheelbase = 4;
@@ -29,37 +43,72 @@ public class Car extends Actor {
         this.controller = controller;
         this.inactiveController = new HeuristicController();
         controllerActive = false;
-        sensorArray = new ArrayList<>();
-        createSensorRow(0, 60, 24);
-        createSensorRow((float) Math.PI, 30, 12);
-        createSensorRow(-0.3f, 55, 16);
-        createSensorRow(0.3f, 55, 16);
-        createSensorRow(-0.65f, 50, 16);
-        createSensorRow(0.65f, 50, 16);
-        createSensorRow(-1.1f, 45, 16);
-        createSensorRow(1.1f, 45, 16);
-        createSensorRow((float)(0.5*Math.PI), 40, 16);
-        createSensorRow((float)(-0.5*Math.PI), 40, 16);
-        createSensorRow(2, 35, 12);
-        createSensorRow(-2, 35, 12);
-        createSensorRow(2.5f, 32, 12);
-        createSensorRow(-2.5f, 32, 12);
+        this.sensorLayout = sensorLayout;
+
+        sensorValues = new double[sensorLayout.getRowCount()];
+        inactiveSensorValues = new double[2];
+        controls = new double[2];
+
+        sensorEngine = new RaySensorEngine();
+        sensorHits = new int[sensorLayout.getRowCount()];
+        Arrays.fill(sensorHits, -1);
+    }
+
+    // The controllers keep no state, so the copy shares them
+    private Car(Car car, Simulator simulator) {
+        super(car, simulator);
+        controller = car.controller;
+        inactiveController = car.inactiveController;
+        controllerActive = car.controllerActive;
+        sensorLayout = car.sensorLayout;
+        turnControl = car.turnControl;
+
+        sensorValues = car.sensorValues.clone();
+        inactiveSensorValues = car.inactiveSensorValues.clone();
+        controls = car.controls.clone();
+
+        sensorEngine = new RaySensorEngine();
+        sensorHits = car.sensorHits.clone();
     }
 
     @Override
-    public void step(ArrayList<Actor> actorArray) {
-        controllerActive = currentNode.active;
+    public Car copy(Simulator simulator) {
+        return new Car(this, simulator);
+    }
 
+    @Override
+    public void decide(ArrayList<Actor> actorArray) {
+        controllerActive = track.isActive(currentNode);
+
+        StepMetrics metrics = simulator.metrics;
+        long start = metrics != null ? System.nanoTime() : 0;
+        double[] values = controllerActive ? getSensorValues(actorArray) : getSensorValues(actorArray, 1);
+        if (metrics != null) {
+            long sensingEnd = System.nanoTime();
+            metrics.add(StepMetrics.Phase.SENSING, sensingEnd - start);
+            start = sensingEnd;
+        }
 
-        double[] controls;
         if (controllerActive) {
-            controls = controller.getControls(getSensorValues(actorArray));
+            controller.getControls(values, controls);
         } else {
-            controls = inactiveController.getControls(getSensorValues(actorArray, 1));
+            inactiveController.getControls(values, controls);
+        }
+        if (metrics != null) {
+            metrics.add(StepMetrics.Phase.INFERENCE, System.nanoTime() - start);
         }
         targetSpeed = (float) controls[0];
         turnControl = (float) ((controls[1]*2)-1)*(Utility.CAR_TURN_MAX*0.15f);
+    }
+
+    // The controllers keep no state between calls, so the same sensor readings always give the same controls
+    @Override
+    public boolean canSleep() {
+        return true;
+    }
 
+    @Override
+    public void act() {
         float acceleration = limitAcceleration(targetSpeed*Utility.CAR_SPEED_MAX - speed);
 
         speed += acceleration;
@@ -76,13 +125,14 @@ public class Car extends Actor {
         }
     }
 
+    // Acceleration and braking are per base step, so a longer step can change the speed by more
     public float limitAcceleration(float acceleration) {
-        if (acceleration > Utility.CAR_ACCELERATION) {
-            acceleration = Utility.CAR_ACCELERATION;
+        if (acceleration > Utility.CAR_ACCELERATION*simulator.getDt()) {
+            acceleration = Utility.CAR_ACCELERATION*simulator.getDt();
         }
 
-        if (acceleration < -1 * Utility.CAR_BREAKING) {
-            acceleration = -1 * Utility.CAR_BREAKING;
+        if (acceleration < -1 * Utility.CAR_BREAKING*simulator.getDt()) {
+            acceleration = -1 * Utility.CAR_BREAKING*simulator.getDt();
         }
 
         return acceleration;
@@ -93,41 +143,36 @@ public class Car extends Actor {
         return turnControl;
     }
 
-    public void createSensorRow(float angle, float distance, int quantity) {
-        LinkedList<Sensor> sensorRow = new LinkedList<>();
-        for (int i = 0; i < quantity; i++) {
-            // Add one to i because we want sensors starting off the car and ending at final distance
-            float sensorDistance = (distance / quantity) * (i + 1);
-            sensorRow.add(new Sensor(sensorDistance, angle, sensorDistance*0.15f));
-        }
-        sensorArray.add(sensorRow);
-    }
-
-    public List<List<Sensor>> getSensors() {
-        return sensorArray;
+    public int getSensorHit(int row) {
+        return sensorHits[row];
     }
 
     public double[] getSensorValues(ArrayList<Actor> actorArray) {
-        return getSensorValues(actorArray, sensorArray.size());
+        return getSensorValues(actorArray, sensorLayout.getRowCount());
     }
 
+    /*
+    For one or all sensor rows the returned array is reused by the next call
+     */
     public double[] getSensorValues(ArrayList<Actor> actorArray, int maxSensors) {
         double[] sensorValues;
         if (maxSensors == 1) {
-            sensorValues = new double[2];
+            sensorValues = inactiveSensorValues;
+        } else if (maxSensors == this.sensorValues.length) {
+            sensorValues = this.sensorValues;
         } else {
             sensorValues = new double[maxSensors];
         }
+        Arrays.fill(sensorValues, 0);
         for (int i = 0; i < maxSensors; i++) {
-            List<Sensor> sensorRow = sensorArray.get(i);
-            for (Sensor sensor : sensorRow) {
-                if (sensor.activated(this, actorArray)) {
-                    float value = 1 - ((sensorRow.indexOf(sensor)*1.0f) / sensorRow.size());
-                    sensorValues[i] = value;
-                    if (maxSensors == 1) {
-                        sensorValues[1] = sensor.lastSpeed;
-                    }
-                    break;
+            int quantity = sensorLayout.getRowQuantity(i);
+            sensorEngine.readRow(this, sensorLayout.getRowAngle(i), sensorLayout.getRowSpacing(i), quantity, actorArray);
+            sensorHits[i] = sensorEngine.hitIndex;
+            if (sensorEngine.hitIndex >= 0) {
+                float value = 1 - ((sensorEngine.hitIndex*1.0f) / quantity);
+                sensorValues[i] = value;
+                if (maxSensors == 1) {
+                    sensorValues[1] = sensorEngine.hitSpeed;
                 }
             }
         }
@@ -0,0 +1,80 @@
+package intersectionmanagement.simulator.car;
+
+import intersectionmanagement.simulator.Actor;
+import intersectionmanagement.simulator.Utility;
+
+import java.util.ArrayList;
+
+/*
+Reads a whole sensor row at once instead of testing each of its sensor circles against every neighbour
+
+Sensor k of a row sits at distance d = spacing*(k+1) along the row's ray and has radius 0.15*d, so an actor at p with
+radius r activates it when |p - u*d| < 0.15*d + r, u being the ray direction
+Squaring gives a quadratic in d, and its roots bound the stretch of the ray where the actor is sensed
+The first sensor in that stretch is then confirmed with exactly the same float test as a discrete sensor circle, so
+readings match testing the sensors one by one bit for bit
+ */
+class RaySensorEngine {
+    private static final float SENSOR_RADIUS_RATIO = 0.15f;
+
+    // Index of the first activated sensor of the last row read, or -1 if none was activated
+    int hitIndex;
+    // Speed of the actor that activated it
+    float hitSpeed;
+
+    void readRow(Car parent, float angle, float spacing, int quantity, ArrayList<Actor> actorArray) {
+        hitIndex = -1;
+        hitSpeed = 0;
+
+        float rayAngle = parent.direction + angle;
+        float cos = (float) Math.cos(rayAngle);
+        float sin = (float) Math.sin(rayAngle);
+        double a = (double) cos*cos + (double) sin*sin - SENSOR_RADIUS_RATIO*SENSOR_RADIUS_RATIO;
+
+        int bestIndex = quantity;
+        for (int i = 0; i < actorArray.size(); i++) {
+            Actor actor = actorArray.get(i);
+            if (actor == parent) {
+                continue;
+            }
+            if (!actor.solid) {
+                continue;
+            }
+
+            double px = actor.x - parent.x;
+            double py = actor.y - parent.y;
+            double b = px*cos + py*sin + SENSOR_RADIUS_RATIO*actor.radius;
+            double c = px*px + py*py - (double) actor.radius*actor.radius;
+            double discriminant = b*b - a*c;
+            // Leave some slack so grazing actors still get the exact test
+            if (discriminant < -1e-6*(b*b + Math.abs(a*c)) - 1e-9) {
+                continue;
+            }
+            double root = Math.sqrt(Math.max(discriminant, 0));
+            double near = (b - root)/a;
+            double far = (b + root)/a;
+
+            // One sensor of slack on both sides covers the rounding of the float test
+            int first = Math.max(0, (int) Math.floor(near/spacing) - 1);
+            int last = Math.min(Math.min(quantity, bestIndex) - 1, (int) Math.ceil(far/spacing));
+            for (int k = first; k <= last; k++) {
+                if (activates(parent.x, parent.y, cos, sin, spacing*(k + 1), actor)) {
+                    // Earlier neighbours win ties, as they do when the sensors are tested one by one
+                    bestIndex = k;
+                    hitSpeed = actor.speed;
+                    break;
+                }
+            }
+        }
+
+        if (bestIndex < quantity) {
+            hitIndex = bestIndex;
+        }
+    }
+
+    private static boolean activates(float anchorX, float anchorY, float cos, float sin, float distance, Actor actor) {
+        float x = anchorX + cos * distance;
+        float y = anchorY + sin * distance;
+        return Utility.distance(x, y, actor.x, actor.y) < distance*SENSOR_RADIUS_RATIO + actor.radius;
+    }
+}
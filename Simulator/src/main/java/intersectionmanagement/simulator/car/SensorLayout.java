@@ -0,0 +1,88 @@
+package intersectionmanagement.simulator.car;
+
+/*
+Immutable description of a car's sensor rows, shared by every car that uses it
+Each row points along an angle relative to the car and holds evenly spaced sensors out to its distance
+Sensors of all rows are also numbered in one flat sequence, row after row, for per sensor lookups
+ */
+public final class SensorLayout {
+    public static final SensorLayout DEFAULT = new SensorLayout(
+            new float[] {0, (float) Math.PI, -0.3f, 0.3f, -0.65f, 0.65f, -1.1f, 1.1f, (float)(0.5*Math.PI), (float)(-0.5*Math.PI), 2, -2, 2.5f, -2.5f},
+            new float[] {60, 30, 55, 55, 50, 50, 45, 45, 40, 40, 35, 35, 32, 32},
+            new int[] {24, 12, 16, 16, 16, 16, 16, 16, 16, 16, 12, 12, 12, 12});
+
+    private static final float SENSOR_RADIUS_RATIO = 0.15f;
+
+    private final float[] rowAngles;
+    private final float[] rowSpacings;
+    private final int[] rowQuantities;
+    private final int[] rowOffsets;
+
+    private final float[] sensorDistances;
+    private final float[] sensorRadii;
+
+    public SensorLayout(float[] angles, float[] distances, int[] quantities) {
+        int rows = angles.length;
+        rowAngles = angles.clone();
+        rowSpacings = new float[rows];
+        rowQuantities = quantities.clone();
+        rowOffsets = new int[rows + 1];
+        for (int row = 0; row < rows; row++) {
+            rowSpacings[row] = distances[row] / quantities[row];
+            rowOffsets[row + 1] = rowOffsets[row] + quantities[row];
+        }
+
+        sensorDistances = new float[rowOffsets[rows]];
+        sensorRadii = new float[rowOffsets[rows]];
+        for (int row = 0; row < rows; row++) {
+            for (int i = 0; i < quantities[row]; i++) {
+                // Add one to i because we want sensors starting off the car and ending at final distance
+                float sensorDistance = rowSpacings[row] * (i + 1);
+                sensorDistances[rowOffsets[row] + i] = sensorDistance;
+                sensorRadii[rowOffsets[row] + i] = sensorDistance*SENSOR_RADIUS_RATIO;
+            }
+        }
+    }
+
+    public int getRowCount() {
+        return rowAngles.length;
+    }
+
+    public float getRowAngle(int row) {
+        return rowAngles[row];
+    }
+
+    // Distance between neighbouring sensors of a row, which is also the distance of its first sensor
+    public float getRowSpacing(int row) {
+        return rowSpacings[row];
+    }
+
+    public int getRowQuantity(int row) {
+        return rowQuantities[row];
+    }
+
+    // Flat index of the first sensor of a row
+    public int getRowOffset(int row) {
+        return rowOffsets[row];
+    }
+
+    public int getSensorCount() {
+        return sensorDistances.length;
+    }
+
+    public float getSensorDistance(int sensor) {
+        return sensorDistances[sensor];
+    }
+
+    public float getSensorRadius(int sensor) {
+        return sensorRadii[sensor];
+    }
+
+    public float getSensorX(int row, int sensor, Car car) {
+        return car.x + (float) Math.cos(car.direction + rowAngles[row]) * sensorDistances[sensor];
+    }
+
+    public float getSensorY(int row, int sensor, Car car) {
+        return car.y + (float) Math.sin(car.direction + rowAngles[row]) * sensorDistances[sensor];
+    }
+}
@@ -5,7 +5,11 @@ import org.encog.neural.networks.BasicNetwork;
 
 public interface CarController {
 
-    double[] getControls(double[] sensors);
+    /*
+    Writes the target speed and turn for the given sensor values into controls
+    The same sensor values must always give the same controls, sleeping cars keep their last controls
+     */
+    void getControls(double[] sensors, double[] controls);
 
     NEATNetwork getNEATNetwork();
 
@@ -0,0 +1,193 @@
+package intersectionmanagement.simulator.control;
+
+import org.encog.engine.network.activation.ActivationFunction;
+import org.encog.neural.neat.NEATLink;
+import org.encog.neural.neat.NEATNetwork;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+A NEATNetwork flattened into primitive arrays, giving exactly the outputs of NEATNetwork.compute without allocating
+NEATNetwork.compute runs activationCycles passes over every link, each pass reading the activations of the one before
+When the network has no loops and no output is more links from the inputs than there are passes, every neuron has
+settled by the last pass, so one pass over the neurons in topological order gives the same outputs
+Otherwise the passes are run as NEATNetwork runs them
+The compiled network keeps no state, every call works in a neuron buffer from newNeuronBuffer that the caller owns
+ */
+public final class CompiledNEATNetwork {
+    private final int inputCount;
+    private final int outputCount;
+    // Neuron 0 is the bias, then come the inputs, then the outputs from outputIndex, then the hidden neurons
+    private final int outputIndex;
+    private final int neuronCount;
+    private final ActivationFunction[] activationFunctions;
+    private final boolean feedForward;
+    private final int activationCycles;
+
+    // Feed forward, the neurons in topological order and the links into each of them in linkStart[i]..linkStart[i+1]
+    private final int[] order;
+    private final int[] linkStart;
+    // Recurrent, every link into a non-input neuron in the network's order
+    private final int[] from;
+    private final int[] to;
+    private final double[] weight;
+
+    public CompiledNEATNetwork(NEATNetwork network) {
+        inputCount = network.getInputCount();
+        outputCount = network.getOutputCount();
+        outputIndex = network.getOutputIndex();
+        activationFunctions = network.getActivationFunctions();
+        neuronCount = activationFunctions.length;
+        activationCycles = network.getActivationCycles();
+
+        // Links into the bias or inputs change nothing that is ever read
+        List<NEATLink> links = new ArrayList<>();
+        for (NEATLink link : network.getLinks()) {
+            if (link.getToNeuron() >= outputIndex) {
+                links.add(link);
+            }
+        }
+
+        int[] depth = getDepths(links);
+        boolean settles = depth != null;
+        for (int i = outputIndex; settles && i < outputIndex + outputCount; i++) {
+            settles = depth[i] <= activationCycles;
+        }
+        feedForward = settles;
+
+        if (feedForward) {
+            order = new int[neuronCount - outputIndex];
+            linkStart = new int[order.length + 1];
+            from = new int[links.size()];
+            to = new int[0];
+            weight = new double[links.size()];
+
+            // Sorting by depth is topological, and keeps each neuron's links in the order NEATNetwork sums them
+            int n = 0;
+            int maxDepth = 0;
+            for (int i = outputIndex; i < neuronCount; i++) {
+                maxDepth = Math.max(maxDepth, depth[i]);
+            }
+            int l = 0;
+            for (int d = 1; d <= maxDepth; d++) {
+                for (int neuron = outputIndex; neuron < neuronCount; neuron++) {
+                    if (depth[neuron] != d) {
+                        continue;
+                    }
+                    order[n] = neuron;
+                    linkStart[n] = l;
+                    for (NEATLink link : links) {
+                        if (link.getToNeuron() == neuron) {
+                            from[l] = link.getFromNeuron();
+                            weight[l] = link.getWeight();
+                            l++;
+                        }
+                    }
+                    n++;
+                }
+            }
+            linkStart[n] = l;
+        } else {
+            order = new int[0];
+            linkStart = new int[0];
+            from = new int[links.size()];
+            to = new int[links.size()];
+            weight = new double[links.size()];
+            for (int l = 0; l < links.size(); l++) {
+                from[l] = links.get(l).getFromNeuron();
+                to[l] = links.get(l).getToNeuron();
+                weight[l] = links.get(l).getWeight();
+            }
+        }
+    }
+
+    /*
+    Longest path in links from the bias or an input to each neuron, neurons without links in are at depth 1
+    Returns null if the links form a loop
+     */
+    private int[] getDepths(List<NEATLink> links) {
+        int[] depth = new int[neuronCount];
+        int[] incoming = new int[neuronCount];
+        for (NEATLink link : links) {
+            if (link.getFromNeuron() >= outputIndex) {
+                incoming[link.getToNeuron()]++;
+            }
+        }
+
+        int[] ready = new int[neuronCount];
+        int readyCount = 0;
+        for (int i = outputIndex; i < neuronCount; i++) {
+            depth[i] = 1;
+            if (incoming[i] == 0) {
+                ready[readyCount++] = i;
+            }
+        }
+        for (int r = 0; r < readyCount; r++) {
+            int neuron = ready[r];
+            for (NEATLink link : links) {
+                if (link.getFromNeuron() == neuron) {
+                    int next = link.getToNeuron();
+                    depth[next] = Math.max(depth[next], depth[neuron] + 1);
+                    if (--incoming[next] == 0) {
+                        ready[readyCount++] = next;
+                    }
+                }
+            }
+        }
+        return readyCount == neuronCount - outputIndex ? depth : null;
+    }
+
+    public boolean isFeedForward() {
+        return feedForward;
+    }
+
+    public int getInputCount() {
+        return inputCount;
+    }
+
+    public int getOutputCount() {
+        return outputCount;
+    }
+
+    public double[] newNeuronBuffer() {
+        // The recurrent passes need the sums and the activations side by side
+        return new double[feedForward ? neuronCount : 2*neuronCount];
+    }
+
+    /*
+    Writes the outputs for the first getInputCount inputs into the first getOutputCount places of output
+     */
+    public void compute(double[] input, double[] output, double[] neurons) {
+        neurons[0] = 1;
+        System.arraycopy(input, 0, neurons, 1, inputCount);
+        if (feedForward) {
+            for (int n = 0; n < order.length; n++) {
+                double sum = 0;
+                for (int l = linkStart[n]; l < linkStart[n + 1]; l++) {
+                    sum += neurons[from[l]]*weight[l];
+                }
+                int neuron = order[n];
+                neurons[neuron] = sum;
+                activationFunctions[neuron].activationFunction(neurons, neuron, 1);
+            }
+        } else {
+            // Sums go in the second half of the buffer, next to the activations of the last pass
+            for (int i = outputIndex; i < neuronCount; i++) {
+                neurons[i] = 0;
+                neurons[neuronCount + i] = 0;
+            }
+            for (int cycle = 0; cycle < activationCycles; cycle++) {
+                for (int l = 0; l < from.length; l++) {
+                    neurons[neuronCount + to[l]] += neurons[from[l]]*weight[l];
+                }
+                for (int i = outputIndex; i < neuronCount; i++) {
+                    neurons[i] = neurons[neuronCount + i];
+                    activationFunctions[i].activationFunction(neurons, i, 1);
+                    neurons[neuronCount + i] = 0;
+                }
+            }
+        }
+        System.arraycopy(neurons, outputIndex, output, 0, outputCount);
+    }
+}
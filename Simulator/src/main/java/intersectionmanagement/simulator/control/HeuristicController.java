@@ -6,12 +6,12 @@ import org.encog.neural.networks.BasicNetwork;
 
 public class HeuristicController implements CarController {
     @Override
-    public double[] getControls(double[] sensors) {
-        double[] controls = {1.f, 0.5f};
+    public void getControls(double[] sensors, double[] controls) {
+        controls[0] = 1.f;
+        controls[1] = 0.5f;
         if (sensors[0] > 0.9) {
             controls[0] = (float) (sensors[1]/Utility.CAR_SPEED_MAX);
         }
-        return controls;
     }
 
     @Override
@@ -2,40 +2,58 @@ package intersectionmanagement.simulator.control;
 
 import org.apache.commons.lang3.SerializationUtils;
 import org.encog.ml.MLRegression;
-import org.encog.ml.data.MLData;
-import org.encog.ml.data.basic.BasicMLData;
+import org.encog.neural.flat.FlatNetwork;
 import org.encog.neural.neat.NEATNetwork;
 import org.encog.neural.networks.BasicNetwork;
 
+/*
+Drives cars with a NEAT or basic network
+One controller is shared by every car of a trial, and by every trial of a genome, so it keeps no state of its own
+The scratch space a network needs while computing is kept per thread, so cars can decide on several threads at once
+ */
 public class NeuralNetworkController implements CarController {
 
     public NEATNetwork neatNetwork;
     public BasicNetwork basicNetwork;
     public MLRegression neuralNetwork;
+    private CompiledNEATNetwork compiledNetwork;
+    private ThreadLocal<double[]> neurons;
+    // BasicNetwork computes in its flat network's own arrays, so each thread gets a copy
+    private ThreadLocal<FlatNetwork> flatNetworks;
 
     public NeuralNetworkController(byte[] serializedNetwork) {
-        try {
-            neatNetwork = SerializationUtils.deserialize(serializedNetwork);
-            neuralNetwork = neatNetwork;
-        } catch (ClassCastException e) {
-            //System.out.println("Not NEAT");
+        this(deserialize(serializedNetwork));
+    }
+
+    public NeuralNetworkController(MLRegression network) {
+        neuralNetwork = network;
+        if (network instanceof NEATNetwork) {
+            neatNetwork = (NEATNetwork) network;
+            compiledNetwork = new CompiledNEATNetwork(neatNetwork);
+            neurons = ThreadLocal.withInitial(compiledNetwork::newNeuronBuffer);
+        } else if (network instanceof BasicNetwork) {
+            basicNetwork = (BasicNetwork) network;
+            flatNetworks = ThreadLocal.withInitial(basicNetwork.getFlat()::clone);
+        } else {
+            throw new IllegalArgumentException(String.format("%s is not a NEAT or basic network", network.getClass().getName()));
         }
-        try {
-            basicNetwork = SerializationUtils.deserialize(serializedNetwork);
-            neuralNetwork = basicNetwork;
-        } catch (ClassCastException e) {
-            //System.out.println("Not basic");
+    }
+
+    private static MLRegression deserialize(byte[] serializedNetwork) {
+        Object network = SerializationUtils.deserialize(serializedNetwork);
+        if (!(network instanceof MLRegression)) {
+            throw new IllegalArgumentException(String.format("%s is not a network", network.getClass().getName()));
         }
+        return (MLRegression) network;
     }
 
     @Override
-    public double[] getControls(double[] sensors) {
-        MLData inputData = new BasicMLData(sensors.length);
-        inputData.setData(sensors);
-        MLData outputData = neuralNetwork.compute(inputData);
-        return outputData.getData();
-//        double[] data = {1, 0.5};
-//        return data;
+    public void getControls(double[] sensors, double[] controls) {
+        if (basicNetwork != null) {
+            flatNetworks.get().compute(sensors, controls);
+            return;
+        }
+        compiledNetwork.compute(sensors, controls, neurons.get());
     }
 
     @Override
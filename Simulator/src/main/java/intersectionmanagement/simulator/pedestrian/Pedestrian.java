@@ -2,14 +2,24 @@ package intersectionmanagement.simulator.pedestrian;
 
 import intersectionmanagement.simulator.Actor;
 import intersectionmanagement.simulator.Simulator;
+import intersectionmanagement.simulator.SplitMix64;
 import intersectionmanagement.simulator.Utility;
-import intersectionmanagement.simulator.track.Node;
+import intersectionmanagement.simulator.track.CompiledTrack;
 
 public class Pedestrian extends Actor {
-    public Pedestrian(Simulator simulator, Node firstTarget) {
-        super(simulator, firstTarget);
+    public Pedestrian(Simulator simulator, CompiledTrack track, int firstTarget, long id, SplitMix64 rng) {
+        super(simulator, track, firstTarget, id, rng);
         speed = Utility.PEDESTRIAN_SPEED;
-        radius = 0.5f;
+        radius = Utility.PEDESTRIAN_RADIUS;
         solid = true;
     }
+
+    private Pedestrian(Pedestrian pedestrian, Simulator simulator) {
+        super(pedestrian, simulator);
+    }
+
+    @Override
+    public Pedestrian copy(Simulator simulator) {
+        return new Pedestrian(this, simulator);
+    }
 }
@@ -1,14 +1,11 @@
 package intersectionmanagement.simulator.spawner;
 
-import intersectionmanagement.simulator.Actor;
 import intersectionmanagement.simulator.Simulator;
 import intersectionmanagement.simulator.car.Car;
-import intersectionmanagement.simulator.control.NeuralNetworkController;
-import intersectionmanagement.simulator.track.Node;
+import intersectionmanagement.simulator.control.CarController;
+import intersectionmanagement.simulator.track.CompiledTrack;
 
-import java.util.ArrayList;
-
-public class CarSpawner extends Actor {
+public class CarSpawner extends Spawner {
 
 
     public enum Function {LINEAR, CONSTANT, SIN}
@@ -16,36 +13,52 @@ public class CarSpawner extends Actor {
     public int simulationSteps;
     public int steps;
     public int counter;
-    public byte[] serializedNetwork;
+    // Shared by every car this spawner adds
+    public CarController controller;
     public Function function;
     public double[] params;
     public double randomness;
 
-    public CarSpawner(Simulator simulator, Node spawnLocation, byte[] serializedNetwork, int simulationSteps, Function function, double[] params, double randomness) {
-        super(simulator, spawnLocation);
-        speed = 0f;
-        radius = 0f;
+    public CarSpawner(Simulator simulator, CompiledTrack track, int spawnLocation, CarController controller, int simulationSteps, Function function, double[] params, double randomness) {
+        super(simulator, track, spawnLocation);
 
         this.simulationSteps = simulationSteps;
         this.steps = 0;
         this.function = function;
         this.params = params;
-        counter = simulator.getRNG().nextInt(getRate());
-        this.serializedNetwork = serializedNetwork;
+        counter = rng.nextInt(getRate());
+        this.controller = controller;
         this.randomness = randomness;
     }
 
+    private CarSpawner(CarSpawner spawner, Simulator simulator) {
+        super(spawner, simulator);
+        simulationSteps = spawner.simulationSteps;
+        steps = spawner.steps;
+        counter = spawner.counter;
+        controller = spawner.controller;
+        function = spawner.function;
+        params = spawner.params;
+        randomness = spawner.randomness;
+    }
+
     @Override
-    public void step(ArrayList<Actor> actorArray) {
-        counter--;
-        if (counter <= 0) {
-            int rate = getRate();
-            counter = rate + simulator.getRNG().nextInt((int) (rate*randomness));
-            simulator.addCar(new Car(simulator, target, new NeuralNetworkController(serializedNetwork)));
-        }
-        if (steps < simulationSteps) {
-            steps++;
-        }
+    public CarSpawner copy(Simulator simulator) {
+        return new CarSpawner(this, simulator);
+    }
+
+    @Override
+    public int firstSpawn() {
+        return firstSpawnAge(counter);
+    }
+
+    @Override
+    public int spawn(int age) {
+        steps = Math.min(age, simulationSteps);
+        int rate = getRate();
+        counter = rate + rng.nextInt((int) (rate*randomness));
+        simulator.addCar(new Car(simulator, track, spawnNode, controller, nextActorId(), rng.split()));
+        return nextSpawnAge(age, counter);
     }
 
     public int getRate() {
@@ -1,25 +1,19 @@
 package intersectionmanagement.simulator.spawner;
 
-import intersectionmanagement.simulator.Actor;
 import intersectionmanagement.simulator.Simulator;
 import intersectionmanagement.simulator.pedestrian.Pedestrian;
-import intersectionmanagement.simulator.track.Node;
+import intersectionmanagement.simulator.track.CompiledTrack;
 
-import java.util.ArrayList;
-
-public class PedestrianSpawner extends Actor {
+public class PedestrianSpawner extends Spawner {
 
     private int simulationSteps;
-    private int steps;
     private int counter;
     private int pedestrianRate;
     private float pedestrianRandomness;
     private boolean pedestriansEnabled;
 
-    public PedestrianSpawner(Simulator simulator, Node firstTarget, int simulationSteps, int pedestrianRate, float pedestrianRandomness) {
-        super(simulator, firstTarget);
-        speed = 0f;
-        radius = 0f;
+    public PedestrianSpawner(Simulator simulator, CompiledTrack track, int firstTarget, int simulationSteps, int pedestrianRate, float pedestrianRandomness) {
+        super(simulator, track, firstTarget);
 
         this.simulationSteps = simulationSteps;
         this.pedestrianRate = pedestrianRate;
@@ -27,20 +21,37 @@ public class PedestrianSpawner extends Actor {
 
         pedestriansEnabled = (pedestrianRate != 0);
         if (pedestriansEnabled) {
-            counter = pedestrianRate + simulator.getRNG().nextInt((int) (pedestrianRate * pedestrianRandomness));
+            counter = pedestrianRate + rng.nextInt((int) (pedestrianRate * pedestrianRandomness));
         }
     }
 
+    private PedestrianSpawner(PedestrianSpawner spawner, Simulator simulator) {
+        super(spawner, simulator);
+        simulationSteps = spawner.simulationSteps;
+        counter = spawner.counter;
+        pedestrianRate = spawner.pedestrianRate;
+        pedestrianRandomness = spawner.pedestrianRandomness;
+        pedestriansEnabled = spawner.pedestriansEnabled;
+    }
+
     @Override
-    public void step(ArrayList<Actor> actorArray) {
-        counter--;
-        if (pedestriansEnabled && counter <= 0) {
-            int rate = pedestrianRate;
-            counter = rate + simulator.getRNG().nextInt((int) (rate*pedestrianRandomness));
-            simulator.addPedestrian(new Pedestrian(simulator, target));
-        }
-        if (steps < simulationSteps) {
-            steps++;
+    public PedestrianSpawner copy(Simulator simulator) {
+        return new PedestrianSpawner(this, simulator);
+    }
+
+    @Override
+    public int firstSpawn() {
+        if (!pedestriansEnabled) {
+            return -1;
         }
+        return firstSpawnAge(counter);
+    }
+
+    @Override
+    public int spawn(int age) {
+        int rate = pedestrianRate;
+        counter = rate + rng.nextInt((int) (rate*pedestrianRandomness));
+        simulator.addPedestrian(new Pedestrian(simulator, track, spawnNode, nextActorId(), rng.split()));
+        return nextSpawnAge(age, counter);
     }
 }
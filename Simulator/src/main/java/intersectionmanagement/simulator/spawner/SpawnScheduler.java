@@ -0,0 +1,77 @@
+package intersectionmanagement.simulator.spawner;
+
+import intersectionmanagement.simulator.Simulator;
+
+import java.util.ArrayList;
+import java.util.PriorityQueue;
+
+/*
+Queue of upcoming spawns, so spawners cost nothing on the steps they do not spawn on
+Events are ordered by step and then by the order the spawners were added, which is the order they would spawn in if
+they were stepped one after another
+Steps here are base steps, see Simulator.dt, and a spawn happens on the first simulator step starting at or after it
+ */
+public class SpawnScheduler {
+    private final ArrayList<Spawner> spawners;
+    // Base step of each spawner's age 0
+    private final ArrayList<Integer> firstSteps;
+    // Each event packs its step into the high half and the spawner's index into the low half
+    private final PriorityQueue<Long> events;
+
+    public SpawnScheduler() {
+        spawners = new ArrayList<>();
+        firstSteps = new ArrayList<>();
+        events = new PriorityQueue<>();
+    }
+
+    /*
+    Copies the queue with copies of the spawners belonging to the given simulator
+     */
+    public SpawnScheduler copy(Simulator simulator) {
+        SpawnScheduler scheduler = new SpawnScheduler();
+        for (Spawner spawner : spawners) {
+            scheduler.spawners.add(spawner.copy(simulator));
+        }
+        scheduler.firstSteps.addAll(firstSteps);
+        scheduler.events.addAll(events);
+        return scheduler;
+    }
+
+    public void add(Spawner spawner, int firstStep) {
+        int index = spawners.size();
+        spawners.add(spawner);
+        firstSteps.add(firstStep);
+
+        int age = spawner.firstSpawn();
+        if (age >= 0) {
+            events.add(event(firstStep + age, index));
+        }
+    }
+
+    /*
+    Runs every spawn that is due on or before this base step
+     */
+    public void spawnDue(int step) {
+        while (!events.isEmpty() && (int) (events.peek() >>> 32) <= step) {
+            int index = (int) (long) events.poll();
+            int firstStep = firstSteps.get(index);
+
+            int age = spawners.get(index).spawn(step - firstStep);
+            if (age >= 0) {
+                events.add(event(firstStep + age, index));
+            }
+        }
+    }
+
+    public int getSpawnerCount() {
+        return spawners.size();
+    }
+
+    public Spawner getSpawner(int index) {
+        return spawners.get(index);
+    }
+
+    private static long event(int step, int index) {
+        return ((long) step << 32) | index;
+    }
+}
@@ -0,0 +1,71 @@
+package intersectionmanagement.simulator.spawner;
+
+import intersectionmanagement.simulator.Simulator;
+import intersectionmanagement.simulator.SplitMix64;
+import intersectionmanagement.simulator.track.CompiledTrack;
+
+/*
+Adds actors at the start of a track curve, driven by the simulator's SpawnScheduler
+A spawner is not an actor, it is only woken up on the steps it spawns on
+Times are ages in base steps, counted from the first step after the spawner was added to the simulator
+ */
+public abstract class Spawner {
+    public long id;
+    public SplitMix64 rng;
+
+    public Simulator simulator;
+    public CompiledTrack track;
+    // Node id of the start of the curve
+    public int spawnNode;
+    public int spawned;
+
+    public Spawner(Simulator simulator, CompiledTrack track, int spawnNode) {
+        this.simulator = simulator;
+        this.track = track;
+        this.spawnNode = spawnNode;
+        id = simulator.newSpawnerId();
+        rng = simulator.newSpawnerRandom();
+    }
+
+    protected Spawner(Spawner spawner, Simulator simulator) {
+        this.simulator = simulator;
+        id = spawner.id;
+        rng = spawner.rng.copy();
+        track = spawner.track;
+        spawnNode = spawner.spawnNode;
+        spawned = spawner.spawned;
+    }
+
+    /*
+    Returns a copy of this spawner belonging to the given simulator
+     */
+    public abstract Spawner copy(Simulator simulator);
+
+    /*
+    Returns the age of the first spawn, or -1 if this spawner never spawns
+     */
+    public abstract int firstSpawn();
+
+    /*
+    Spawns one actor at the given age and returns the age of the next spawn, or -1 if there is none
+     */
+    public abstract int spawn(int age);
+
+    /*
+    Spawners count down a counter once a step and spawn on the step it runs out, these turn counters into ages
+    A counter of 0 or 1 runs out on the very next step
+     */
+    protected static int firstSpawnAge(int counter) {
+        return Math.max(counter - 1, 0);
+    }
+
+    protected static int nextSpawnAge(int age, int counter) {
+        return age + Math.max(counter, 1);
+    }
+
+    // The id of a spawned actor combines this spawner's id with its spawn count
+    protected long nextActorId() {
+        spawned++;
+        return (id << 32) | spawned;
+    }
+}
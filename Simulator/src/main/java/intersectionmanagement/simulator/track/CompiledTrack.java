@@ -0,0 +1,118 @@
+package intersectionmanagement.simulator.track;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+Immutable track graph with nodes numbered from 0, so it can be shared by any number of simulations at once
+Coordinates and active flags are kept in primitive arrays, and the successors of node n are
+successors[successorStart[n]] to successors[successorStart[n+1]-1], in the same order as Node.nextNodes
+ */
+public final class CompiledTrack {
+    private final float[] x;
+    private final float[] y;
+    private final boolean[] active;
+    private final int[] successorStart;
+    private final int[] successors;
+    private final int[] roots;
+
+    CompiledTrack(float[] x, float[] y, boolean[] active, int[] successorStart, int[] successors, int[] roots) {
+        this.x = x;
+        this.y = y;
+        this.active = active;
+        this.successorStart = successorStart;
+        this.successors = successors;
+        this.roots = roots;
+    }
+
+    /*
+    Numbers every node reachable from the roots, depth first, and flattens their links
+     */
+    public static CompiledTrack compile(List<Node> rootNodes) {
+        Map<Node, Integer> ids = new IdentityHashMap<>();
+        Deque<Node> pending = new ArrayDeque<>();
+        for (Node root : rootNodes) {
+            if (!ids.containsKey(root)) {
+                ids.put(root, ids.size());
+                pending.push(root);
+            }
+        }
+
+        int linkCount = 0;
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            linkCount += node.nextNodes.size();
+            for (Node nextNode : node.nextNodes) {
+                if (!ids.containsKey(nextNode)) {
+                    ids.put(nextNode, ids.size());
+                    pending.push(nextNode);
+                }
+            }
+        }
+
+        int nodeCount = ids.size();
+        Node[] nodes = new Node[nodeCount];
+        for (Map.Entry<Node, Integer> entry : ids.entrySet()) {
+            nodes[entry.getValue()] = entry.getKey();
+        }
+
+        float[] x = new float[nodeCount];
+        float[] y = new float[nodeCount];
+        boolean[] active = new boolean[nodeCount];
+        int[] successorStart = new int[nodeCount + 1];
+        int[] successors = new int[linkCount];
+        for (int n = 0; n < nodeCount; n++) {
+            Node node = nodes[n];
+            x[n] = node.x;
+            y[n] = node.y;
+            active[n] = node.active;
+            int link = successorStart[n];
+            for (Node nextNode : node.nextNodes) {
+                successors[link++] = ids.get(nextNode);
+            }
+            successorStart[n + 1] = link;
+        }
+
+        int[] roots = new int[rootNodes.size()];
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = ids.get(rootNodes.get(i));
+        }
+        return new CompiledTrack(x, y, active, successorStart, successors, roots);
+    }
+
+    public int getNodeCount() {
+        return x.length;
+    }
+
+    public float getX(int node) {
+        return x[node];
+    }
+
+    public float getY(int node) {
+        return y[node];
+    }
+
+    public boolean isActive(int node) {
+        return active[node];
+    }
+
+    public int getSuccessorCount(int node) {
+        return successorStart[node + 1] - successorStart[node];
+    }
+
+    public int getSuccessor(int node, int index) {
+        return successors[successorStart[node] + index];
+    }
+
+    // Roots are the nodes the spawners start from, in the order the track file lists their curves
+    public int getRootCount() {
+        return roots.length;
+    }
+
+    public int getRoot(int index) {
+        return roots[index];
+    }
+}
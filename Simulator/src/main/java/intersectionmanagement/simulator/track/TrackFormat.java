@@ -0,0 +1,229 @@
+package intersectionmanagement.simulator.track;
+
+import intersectionmanagement.simulator.Utility;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/*
+Binary form of a precompiled track, so trials can skip the JSON and the Bezier curves entirely
+A file holds the track name followed by the car graph and the pedestrian graph, each laid out as
+node count, link count, root count, x, y, active, successorStart, successors and roots, all big endian
+
+Usage: TrackFormat <track resource> <output file>
+ */
+public final class TrackFormat {
+    public static final String EXTENSION = ".track";
+
+    private static final int MAGIC = 0x494d544b;
+    private static final int VERSION = 1;
+
+    private TrackFormat() {}
+
+    public static void main(String[] args) throws IOException {
+        write(args[0], Paths.get(args[1]));
+    }
+
+    public static boolean isPrecompiled(String trackPath) {
+        return trackPath.endsWith(EXTENSION);
+    }
+
+    public static void write(String trackPath, Path file) throws IOException {
+        String name = TrackParser.getName(trackPath);
+        CompiledTrack carTrack = TrackParser.compileTrack(trackPath, false);
+        CompiledTrack pedestrianTrack = TrackParser.compileTrack(trackPath, true);
+
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(12 + nameBytes.length + size(carTrack) + size(pedestrianTrack));
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(nameBytes.length);
+        buffer.put(nameBytes);
+        put(buffer, carTrack);
+        put(buffer, pedestrianTrack);
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    public static String readName(String trackPath) throws IOException {
+        ByteBuffer buffer = load(trackPath);
+        return getName(buffer, trackPath);
+    }
+
+    public static CompiledTrack read(String trackPath, boolean pedestrian) throws IOException {
+        ByteBuffer buffer = load(trackPath);
+        getName(buffer, trackPath);
+        CompiledTrack carTrack = get(buffer, trackPath);
+        if (!pedestrian) {
+            return carTrack;
+        }
+        return get(buffer, trackPath);
+    }
+
+    /*
+    Files on disk are mapped, anything else is looked up on the classpath like the JSON tracks
+     */
+    private static ByteBuffer load(String trackPath) throws IOException {
+        Path file = Paths.get(trackPath);
+        if (Files.isRegularFile(file)) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+
+        InputStream in = Utility.class.getResourceAsStream("/" + trackPath);
+        if (in == null) {
+            throw new IOException("Track not found: " + trackPath);
+        }
+        try (ReadableByteChannel channel = Channels.newChannel(in)) {
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            while (channel.read(buffer) >= 0) {
+                if (!buffer.hasRemaining()) {
+                    ByteBuffer larger = ByteBuffer.allocate(buffer.capacity()*2);
+                    buffer.flip();
+                    larger.put(buffer);
+                    buffer = larger;
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    private static String getName(ByteBuffer buffer, String trackPath) throws IOException {
+        if (buffer.remaining() < 12 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a precompiled track: " + trackPath);
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException(String.format("Unsupported track format version %d: %s", version, trackPath));
+        }
+        int nameLength = buffer.getInt();
+        if (nameLength < 0 || nameLength > buffer.remaining()) {
+            throw new IOException(String.format("Track name of %d bytes does not fit the file: %s", nameLength, trackPath));
+        }
+        byte[] nameBytes = new byte[nameLength];
+        buffer.get(nameBytes);
+        return new String(nameBytes, StandardCharsets.UTF_8);
+    }
+
+    private static int size(CompiledTrack track) {
+        int nodes = track.getNodeCount();
+        int links = 0;
+        for (int node = 0; node < nodes; node++) {
+            links += track.getSuccessorCount(node);
+        }
+        return 12 + nodes*(4 + 4 + 1 + 4) + 4 + links*4 + track.getRootCount()*4;
+    }
+
+    private static void put(ByteBuffer buffer, CompiledTrack track) {
+        int nodes = track.getNodeCount();
+        int links = 0;
+        for (int node = 0; node < nodes; node++) {
+            links += track.getSuccessorCount(node);
+        }
+        buffer.putInt(nodes);
+        buffer.putInt(links);
+        buffer.putInt(track.getRootCount());
+        for (int node = 0; node < nodes; node++) {
+            buffer.putFloat(track.getX(node));
+        }
+        for (int node = 0; node < nodes; node++) {
+            buffer.putFloat(track.getY(node));
+        }
+        for (int node = 0; node < nodes; node++) {
+            buffer.put((byte) (track.isActive(node) ? 1 : 0));
+        }
+        int start = 0;
+        buffer.putInt(start);
+        for (int node = 0; node < nodes; node++) {
+            start += track.getSuccessorCount(node);
+            buffer.putInt(start);
+        }
+        for (int node = 0; node < nodes; node++) {
+            for (int i = 0; i < track.getSuccessorCount(node); i++) {
+                buffer.putInt(track.getSuccessor(node, i));
+            }
+        }
+        for (int i = 0; i < track.getRootCount(); i++) {
+            buffer.putInt(track.getRoot(i));
+        }
+    }
+
+    /*
+    The counts are checked against what is left of the file before anything is allocated, and the links and roots
+    against the node count, so a damaged file gives an IOException instead of a broken track
+     */
+    private static CompiledTrack get(ByteBuffer buffer, String trackPath) throws IOException {
+        if (buffer.remaining() < 12) {
+            throw new IOException("Truncated precompiled track: " + trackPath);
+        }
+        int nodes = buffer.getInt();
+        int links = buffer.getInt();
+        int rootCount = buffer.getInt();
+        if (nodes < 0 || links < 0 || rootCount < 0) {
+            throw new IOException(String.format("Negative counts %d, %d and %d in precompiled track: %s", nodes, links,
+                    rootCount, trackPath));
+        }
+        long size = nodes*(4L + 4 + 1 + 4) + 4 + links*4L + rootCount*4L;
+        if (size > buffer.remaining()) {
+            throw new IOException(String.format("Precompiled track needs %d more bytes than it has: %s",
+                    size - buffer.remaining(), trackPath));
+        }
+
+        float[] x = new float[nodes];
+        float[] y = new float[nodes];
+        boolean[] active = new boolean[nodes];
+        int[] successorStart = new int[nodes + 1];
+        int[] successors = new int[links];
+        int[] roots = new int[rootCount];
+        buffer.asFloatBuffer().get(x);
+        buffer.position(buffer.position() + nodes*4);
+        buffer.asFloatBuffer().get(y);
+        buffer.position(buffer.position() + nodes*4);
+        for (int node = 0; node < nodes; node++) {
+            active[node] = buffer.get() != 0;
+        }
+        buffer.asIntBuffer().get(successorStart);
+        buffer.position(buffer.position() + successorStart.length*4);
+        buffer.asIntBuffer().get(successors);
+        buffer.position(buffer.position() + links*4);
+        buffer.asIntBuffer().get(roots);
+        buffer.position(buffer.position() + rootCount*4);
+
+        if (successorStart[0] != 0 || successorStart[nodes] != links) {
+            throw new IOException("Links do not add up to the link count in precompiled track: " + trackPath);
+        }
+        for (int node = 0; node < nodes; node++) {
+            if (successorStart[node] > successorStart[node + 1]) {
+                throw new IOException("Links out of order in precompiled track: " + trackPath);
+            }
+        }
+        checkNodes(successors, nodes, trackPath);
+        checkNodes(roots, nodes, trackPath);
+        return new CompiledTrack(x, y, active, successorStart, successors, roots);
+    }
+
+    private static void checkNodes(int[] nodeIds, int nodes, String trackPath) throws IOException {
+        for (int node : nodeIds) {
+            if (node < 0 || node >= nodes) {
+                throw new IOException(String.format("Node %d out of range in precompiled track: %s", node, trackPath));
+            }
+        }
+    }
+}
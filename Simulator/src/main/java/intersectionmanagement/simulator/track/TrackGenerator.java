@@ -0,0 +1,209 @@
+package intersectionmanagement.simulator.track;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/*
+Generates grids of four way intersections in the curve JSON format, for finding where the simulator stops scaling
+Every road runs across the whole world with the given number of lanes in each direction, and cars enter at both ends
+At each intersection every lane can go straight on, the outermost lane can take the near turn and the innermost lane
+the far turn, like the lanes of four-way.json
+
+Usage: TrackGenerator <lanes> <columns> <rows> <output file>
+ */
+public final class TrackGenerator {
+    private static final int WORLD_SIZE = 400;
+    // Distance from the world's edges to the ends of the roads
+    private static final int MARGIN = 10;
+    private static final int LANE_WIDTH = 4;
+    // Length of the active stretch before each intersection
+    private static final int APPROACH = 10;
+    // Inactive stretches get about one node every this many units
+    private static final int NODE_SPACING = 10;
+
+    // East, south, west and north, y grows downwards
+    private static final int[] DIRECTION_X = {1, 0, -1, 0};
+    private static final int[] DIRECTION_Y = {0, 1, 0, -1};
+    // Side of the road each direction's lanes are on
+    private static final int[] SIDE_X = {0, 1, 0, -1};
+    private static final int[] SIDE_Y = {-1, 0, 1, 0};
+
+    private TrackGenerator() {}
+
+    public static void main(String[] args) throws IOException {
+        int lanes = Integer.parseInt(args[0]);
+        int columns = Integer.parseInt(args[1]);
+        int rows = Integer.parseInt(args[2]);
+        String track = generate(lanes, columns, rows).toString();
+        Files.write(Paths.get(args[3]), track.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String getName(int lanes, int columns, int rows) {
+        return String.format("gen_grid-%dx%dx%d", lanes, columns, rows);
+    }
+
+    /*
+    A grid of columns*rows intersections with roads of the given number of lanes each way
+     */
+    public static JSONObject generate(int lanes, int columns, int rows) {
+        if (lanes < 1 || columns < 1 || rows < 1) {
+            throw new IllegalArgumentException("A grid needs at least one lane, column and row");
+        }
+        int halfSize = getHalfSize(lanes);
+        int[] roadX = roadPositions(columns);
+        int[] roadY = roadPositions(rows);
+        int spacing = Math.min(roadX.length > 1 ? roadX[1] - roadX[0] : WORLD_SIZE, roadY.length > 1 ? roadY[1] - roadY[0] : WORLD_SIZE);
+        if (roadX[0] - MARGIN < halfSize + APPROACH + NODE_SPACING || spacing < 2*halfSize + APPROACH + NODE_SPACING) {
+            throw new IllegalArgumentException(String.format("%d lane intersections do not fit in a %dx%d grid", lanes, columns, rows));
+        }
+
+        JSONArray curves = new JSONArray();
+        for (int y : roadY) {
+            for (int lane = 0; lane < lanes; lane++) {
+                addRoad(curves, 0, lane, roadX, y, halfSize);
+                addRoad(curves, 2, lane, roadX, y, halfSize);
+            }
+        }
+        for (int x : roadX) {
+            for (int lane = 0; lane < lanes; lane++) {
+                addRoad(curves, 1, lane, roadY, x, halfSize);
+                addRoad(curves, 3, lane, roadY, x, halfSize);
+            }
+        }
+        for (int x : roadX) {
+            for (int y : roadY) {
+                addIntersection(curves, lanes, x, y, halfSize);
+            }
+        }
+
+        JSONObject track = new JSONObject();
+        track.put("name", getName(lanes, columns, rows));
+        track.put("description", String.format("Grid of %dx%d four way intersections with %d lanes each way", columns, rows, lanes));
+        track.put("curves", curves);
+        return track;
+    }
+
+    // Intersections stretch this far from the middle of the crossing roads
+    private static int getHalfSize(int lanes) {
+        return LANE_WIDTH*lanes + 6;
+    }
+
+    // Evenly spread, rounded so that the ends of linked curves match exactly
+    private static int[] roadPositions(int count) {
+        int[] positions = new int[count];
+        for (int i = 0; i < count; i++) {
+            positions[i] = Math.round(WORLD_SIZE*(i + 1)/(float) (count + 1));
+        }
+        return positions;
+    }
+
+    // Offset of a lane from the middle of its road
+    private static int laneOffset(int lane) {
+        return LANE_WIDTH/2 + LANE_WIDTH*lane;
+    }
+
+    /*
+    One lane of a road, from the edge of the world through every intersection to the other edge
+    Crossings are the positions along the road of the roads it crosses, position is where the road itself lies
+     */
+    private static void addRoad(JSONArray curves, int direction, int lane, int[] crossings, int position, int halfSize) {
+        boolean horizontal = DIRECTION_X[direction] != 0;
+        int forward = horizontal ? DIRECTION_X[direction] : DIRECTION_Y[direction];
+        int laneCoordinate = position + laneOffset(lane)*(horizontal ? SIDE_Y[direction] : SIDE_X[direction]);
+
+        int along = forward > 0 ? MARGIN : WORLD_SIZE - MARGIN;
+        for (int i = 0; i < crossings.length; i++) {
+            int crossing = forward > 0 ? crossings[i] : crossings[crossings.length - 1 - i];
+            int entry = crossing - forward*halfSize;
+            int approach = entry - forward*APPROACH;
+            addLine(curves, horizontal, laneCoordinate, along, approach, false, precision(approach - along));
+            addLine(curves, horizontal, laneCoordinate, approach, entry, true, 2);
+            along = crossing + forward*halfSize;
+        }
+        int end = forward > 0 ? WORLD_SIZE - MARGIN : MARGIN;
+        addLine(curves, horizontal, laneCoordinate, along, end, false, precision(end - along));
+    }
+
+    private static void addLine(JSONArray curves, boolean horizontal, int laneCoordinate, int from, int to, boolean active, int precision) {
+        if (horizontal) {
+            curves.put(curve(active, precision, from, laneCoordinate, to, laneCoordinate));
+        } else {
+            curves.put(curve(active, precision, laneCoordinate, from, laneCoordinate, to));
+        }
+    }
+
+    private static int precision(int length) {
+        return Math.max(2, Math.abs(length)/NODE_SPACING + 1);
+    }
+
+    /*
+    The curves through one intersection, from the end of each approach to the start of the roads leaving it
+     */
+    private static void addIntersection(JSONArray curves, int lanes, int x, int y, int halfSize) {
+        for (int direction = 0; direction < 4; direction++) {
+            int near = (direction + 3) % 4;
+            int far = (direction + 1) % 4;
+            // The near turn leaves towards the side of the road the lanes are on
+            if (DIRECTION_X[near] != SIDE_X[direction] || DIRECTION_Y[near] != SIDE_Y[direction]) {
+                int swap = near;
+                near = far;
+                far = swap;
+            }
+
+            for (int lane = 0; lane < lanes; lane++) {
+                int entryX = x - DIRECTION_X[direction]*halfSize + SIDE_X[direction]*laneOffset(lane);
+                int entryY = y - DIRECTION_Y[direction]*halfSize + SIDE_Y[direction]*laneOffset(lane);
+
+                int exitX = x + DIRECTION_X[direction]*halfSize + SIDE_X[direction]*laneOffset(lane);
+                int exitY = y + DIRECTION_Y[direction]*halfSize + SIDE_Y[direction]*laneOffset(lane);
+                curves.put(curve(true, 2, entryX, entryY, exitX, exitY));
+
+                if (lane == lanes - 1) {
+                    addTurn(curves, direction, near, lane, entryX, entryY, x, y, halfSize);
+                }
+                if (lane == 0) {
+                    addTurn(curves, direction, far, lane, entryX, entryY, x, y, halfSize);
+                }
+            }
+        }
+    }
+
+    // Quadratic curve with its control point where the entry and exit lanes cross
+    private static void addTurn(JSONArray curves, int direction, int turn, int lane, int entryX, int entryY, int x, int y, int halfSize) {
+        int exitX = x + DIRECTION_X[turn]*halfSize + SIDE_X[turn]*laneOffset(lane);
+        int exitY = y + DIRECTION_Y[turn]*halfSize + SIDE_Y[turn]*laneOffset(lane);
+        int controlX = DIRECTION_X[direction] != 0 ? exitX : entryX;
+        int controlY = DIRECTION_X[direction] != 0 ? entryY : exitY;
+
+        JSONObject curve = new JSONObject();
+        curve.put("active", true);
+        curve.put("degree", 3);
+        curve.put("pedestrian", false);
+        curve.put("precision", 8);
+        curve.put("x_0", entryX);
+        curve.put("y_0", entryY);
+        curve.put("x_1", controlX);
+        curve.put("y_1", controlY);
+        curve.put("x_2", exitX);
+        curve.put("y_2", exitY);
+        curves.put(curve);
+    }
+
+    private static JSONObject curve(boolean active, int precision, int x0, int y0, int x1, int y1) {
+        JSONObject curve = new JSONObject();
+        curve.put("active", active);
+        curve.put("degree", 2);
+        curve.put("pedestrian", false);
+        curve.put("precision", precision);
+        curve.put("x_0", x0);
+        curve.put("y_0", y0);
+        curve.put("x_1", x1);
+        curve.put("y_1", y1);
+        return curve;
+    }
+}
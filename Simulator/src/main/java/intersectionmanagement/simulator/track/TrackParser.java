@@ -1,10 +1,15 @@
 package intersectionmanagement.simulator.track;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 import intersectionmanagement.simulator.Utility;
@@ -12,17 +17,67 @@ import org.json.JSONObject;
 import org.json.JSONArray;
 
 public class TrackParser {
+    // Compiled tracks are immutable, so every trial in the process shares the one built for its path
+    private static final Map<String, CompiledTrack> trackCache = new ConcurrentHashMap<>();
 
     public static String getName(String trackPath) throws IOException {
-        String trackFile = Utility.loadResource(trackPath);
-        JSONObject trackJSON = new JSONObject(trackFile);
+        if (TrackFormat.isPrecompiled(trackPath)) {
+            return TrackFormat.readName(trackPath);
+        }
+        return loadJSON(trackPath).getString("name");
+    }
 
-        return trackJSON.getString("name");
+    /*
+    Files on disk are read directly, like generated tracks, anything else is looked up on the classpath
+     */
+    private static JSONObject loadJSON(String trackPath) throws IOException {
+        Path file = Paths.get(trackPath);
+        if (Files.isRegularFile(file)) {
+            return new JSONObject(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        }
+        return new JSONObject(Utility.loadResource(trackPath));
+    }
+
+    /*
+    Returns the compiled track for the path, only loading it the first time it is asked for
+    Paths ending in TrackFormat.EXTENSION are read as precompiled binary tracks, anything else is parsed as JSON
+    Files on disk are cached by their modification time and size as well, so a rewritten file is loaded again
+     */
+    public static CompiledTrack loadTrack(String trackPath, boolean pedestrian) throws IOException {
+        String key = (pedestrian ? "pedestrian:" : "car:") + trackPath + getVersion(trackPath);
+        CompiledTrack track = trackCache.get(key);
+        if (track != null) {
+            return track;
+        }
+
+        // Loaded outside the cache, so other tracks are not held up, two threads may both load the same track
+        if (TrackFormat.isPrecompiled(trackPath)) {
+            track = TrackFormat.read(trackPath, pedestrian);
+        } else {
+            track = compileTrack(trackPath, pedestrian);
+        }
+        CompiledTrack existing = trackCache.putIfAbsent(key, track);
+        return existing != null ? existing : track;
+    }
+
+    // Classpath tracks cannot change while the process runs
+    private static String getVersion(String trackPath) throws IOException {
+        Path file = Paths.get(trackPath);
+        if (Files.isRegularFile(file)) {
+            return "@" + Files.getLastModifiedTime(file).toMillis() + ":" + Files.size(file);
+        }
+        return "";
+    }
+
+    /*
+    Parses the track and numbers its nodes, this is what the simulator runs on
+     */
+    public static CompiledTrack compileTrack(String trackPath, boolean pedestrian) throws IOException {
+        return CompiledTrack.compile(parseTrack(trackPath, pedestrian));
     }
 
     public static List<Node> parseTrack(String trackPath, boolean pedestrian) throws IOException {
-        String trackFile = Utility.loadResource(trackPath);
-        JSONObject trackJSON = new JSONObject(trackFile);
+        JSONObject trackJSON = loadJSON(trackPath);
 
         List<Node> curves = new LinkedList<>();
         JSONArray curvesJSON = trackJSON.getJSONArray("curves");
@@ -104,43 +159,52 @@ public class TrackParser {
     Finds curves that have a start point equal to the end point of another curve and links them together
      */
     public static List<Node> linkCurves(List<Node> roots) {
+        // The curves are still separate chains, so the node before each one's end is found before any are linked
+        List<Node> penultimateNodes = new ArrayList<>();
+        for (Node root : roots) {
+            penultimateNodes.add(findPenultimate(root));
+        }
+
         // If a root node is linked backwards, then it is no longer a root node, store these here
         List<Node> linkedNodes = new LinkedList<>();
-        for (Node node : roots) {
-            linkedNodes.addAll(recursiveLinkEnd(roots, node));
+        for (Node node : penultimateNodes) {
+            linkedNodes.addAll(linkEnd(roots, node));
         }
 
         roots.removeAll(linkedNodes);
         return roots;
     }
 
+    private static Node findPenultimate(Node root) {
+        Node node = root;
+        while (node.nextNodes.get(0).nextNodes.size() > 0) {
+            node = node.nextNodes.get(0);
+        }
+        return node;
+    }
+
     /*
-    Recursively finds penultimate nodes and checks if their next nodes (which will be end nodes) are the same as any
-    root nodes
+    Checks if the end node after a penultimate node is the same as any root nodes
     If so, then the penultimate node is linked to the root of the other curve and that curve's root node will be
     removed as a root node
+    Tracks can loop, so this only looks at the one curve and never follows the links it makes
      */
-    public static List<Node> recursiveLinkEnd(List<Node> roots, Node node) {
+    private static List<Node> linkEnd(List<Node> roots, Node node) {
         LinkedList<Node> removedEndNodes = new LinkedList<>();
         LinkedList<Node> addedEndNodes = new LinkedList<>();
         LinkedList<Node> removedRoots = new LinkedList<>();
 
         for (Node nextNode : node.nextNodes) {
-            if (nextNode.nextNodes.size() == 0) {
-                for (Node rootNode : roots) {
-                    if (rootNode.x == nextNode.x && rootNode.y == nextNode.y) {
-                        addedEndNodes.add(rootNode);
-                        removedEndNodes.add(nextNode);
-                        removedRoots.add(rootNode);
-                    }
+            for (Node rootNode : roots) {
+                if (rootNode.x == nextNode.x && rootNode.y == nextNode.y) {
+                    addedEndNodes.add(rootNode);
+                    removedEndNodes.add(nextNode);
+                    removedRoots.add(rootNode);
                 }
-            } else {
-                removedRoots.addAll(recursiveLinkEnd(roots, nextNode));
             }
         }
         node.nextNodes.removeAll(removedEndNodes);
         node.nextNodes.addAll(addedEndNodes);
         return removedRoots;
     }
-
 }
@@ -0,0 +1,89 @@
+package intersectionmanagement.simulator;
+
+import intersectionmanagement.simulator.car.Car;
+import intersectionmanagement.simulator.track.CompiledTrack;
+import intersectionmanagement.simulator.track.TrackParser;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SimulatorTest {
+
+    @Test
+    public void setDtAcceptsStepsUpToMaxDt() {
+        Simulator sim = new Simulator(1);
+        for (float dt : new float[]{Float.MIN_VALUE, 0.25f, 1, 2, Simulator.MAX_DT}) {
+            sim.setDt(dt);
+            assertEquals(dt, sim.getDt(), 0);
+        }
+    }
+
+    @Test
+    public void setDtRejectsStepsOutsideTheRange() {
+        Simulator sim = new Simulator(1);
+        float[] invalid = {0, -0f, -1, Math.nextUp(Simulator.MAX_DT), 8, Float.NaN, Float.POSITIVE_INFINITY};
+        for (float dt : invalid) {
+            try {
+                sim.setDt(dt);
+                fail("dt " + dt + " was accepted");
+            } catch (IllegalArgumentException e) {
+                assertEquals(1, sim.getDt(), 0);
+            }
+        }
+    }
+
+    @Test
+    public void maxDtKeepsTheBroadPhaseSound() {
+        assertTrue(Simulator.MAX_DT <= Simulator.MAX_BROAD_PHASE_DT);
+    }
+
+    /*
+    Oncoming cars at top speed and the largest dt, 1.8 apart sideways, clip each other halfway through the step
+    They are more than two radii apart at both its start and its end, so a per-tick overlap test misses them
+     */
+    @Test
+    public void sweptTestCatchesCarsPassingThroughEachOther() {
+        float move = Utility.CAR_SPEED_MAX*Simulator.MAX_DT;
+        float reach = 2*Utility.CAR_RADIUS;
+        float side = 1.8f;
+        assertTrue(Utility.distance(0, -move/2, side, move/2) > reach);
+        assertTrue(Utility.distance(0, move/2, side, -move/2) > reach);
+        assertTrue(Simulator.sweptOverlap(0, -move/2, 0, move/2, side, move/2, side, -move/2, reach));
+    }
+
+    // Crossing paths that the cars reach at different times, parallel lanes out of reach, and a crossing they meet at
+    @Test
+    public void sweptTestOnlyCatchesCarsThatMeet() {
+        float reach = 2*Utility.CAR_RADIUS;
+        assertFalse(Simulator.sweptOverlap(-1, 0, 1, 0, 0, -4, 0, -3, reach));
+        assertFalse(Simulator.sweptOverlap(0, 0, 1, 0, 0, 3, 1, 3, reach));
+        assertTrue(Simulator.sweptOverlap(-1, 0, 1, 0, 0, -1, 0, 1, reach));
+    }
+
+    // A car spawns moving, so its first step has to be swept from where it spawned
+    @Test
+    public void firstMoveIsSweptFromTheSpawnPosition() throws IOException {
+        for (Simulator.Engine engine : Simulator.Engine.values()) {
+            CompiledTrack track = TrackParser.loadTrack("tracks/crossing.json", false);
+            Simulator sim = new Simulator(1, engine);
+            Car car = new Car(sim, track, track.getRoot(0), null, 1, new SplitMix64(1));
+            float spawnX = car.x;
+            float spawnY = car.y;
+            sim.addCar(car);
+            Actor actor = car;
+            sim.step();
+            assertEquals(spawnX, car.x, 0);
+            assertEquals(spawnY, car.y, 0);
+
+            sim.step();
+            assertTrue(Utility.distance(spawnX, spawnY, car.x, car.y) > 0);
+            assertEquals(spawnX, actor.startX, 0);
+            assertEquals(spawnY, actor.startY, 0);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package intersectionmanagement.simulator.car;
+
+import intersectionmanagement.simulator.Actor;
+import intersectionmanagement.simulator.Simulator;
+import intersectionmanagement.simulator.SplitMix64;
+import intersectionmanagement.simulator.Utility;
+import intersectionmanagement.simulator.track.CompiledTrack;
+import intersectionmanagement.simulator.track.TrackParser;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RaySensorEngineTest {
+    private static final SensorLayout LAYOUT = SensorLayout.DEFAULT;
+
+    // Neighbours scattered around the car, some of them not solid and some of them pedestrian sized
+    @Test
+    public void randomPlacementsMatchTheDiscreteSensors() throws IOException {
+        Random random = new Random(1);
+        for (int placement = 0; placement < 2000; placement++) {
+            ArrayList<Actor> actors = new ArrayList<>();
+            Car car = car(random, actors);
+            int neighbours = 1 + random.nextInt(12);
+            for (int i = 0; i < neighbours; i++) {
+                Car neighbour = neighbour(random, actors);
+                neighbour.x = car.x + (random.nextFloat()*2 - 1)*70;
+                neighbour.y = car.y + (random.nextFloat()*2 - 1)*70;
+            }
+            assertSameReadings("placement " + placement, car, actors);
+        }
+    }
+
+    /*
+    Neighbours just inside or just outside the circle of one sensor, a few ulps either way
+    These are the readings where the float test disagrees with the exact roots and the engine relies on its slack
+     */
+    @Test
+    public void grazingNeighboursMatchTheDiscreteSensors() throws IOException {
+        Random random = new Random(2);
+        int hits = 0;
+        int misses = 0;
+        for (int placement = 0; placement < 20000; placement++) {
+            ArrayList<Actor> actors = new ArrayList<>();
+            Car car = car(random, actors);
+            Car neighbour = neighbour(random, actors);
+            neighbour.solid = true;
+
+            int row = random.nextInt(LAYOUT.getRowCount());
+            int sensor = LAYOUT.getRowOffset(row) + random.nextInt(LAYOUT.getRowQuantity(row));
+            float sensorX = LAYOUT.getSensorX(row, sensor, car);
+            float sensorY = LAYOUT.getSensorY(row, sensor, car);
+            double reach = LAYOUT.getSensorRadius(sensor) + neighbour.radius;
+            double angle = random.nextDouble()*2*Math.PI;
+            neighbour.x = nudge((float) (sensorX + Math.cos(angle)*reach), random.nextInt(9) - 4);
+            neighbour.y = nudge((float) (sensorY + Math.sin(angle)*reach), random.nextInt(9) - 4);
+
+            if (Utility.distance(sensorX, sensorY, neighbour.x, neighbour.y) < LAYOUT.getSensorRadius(sensor) + neighbour.radius) {
+                hits++;
+            } else {
+                misses++;
+            }
+            assertSameReadings("placement " + placement, car, actors);
+        }
+        assertTrue(hits > 1000);
+        assertTrue(misses > 1000);
+    }
+
+    private static Car car(Random random, ArrayList<Actor> actors) throws IOException {
+        CompiledTrack track = TrackParser.loadTrack("tracks/crossing.json", false);
+        Car car = new Car(new Simulator(1), track, track.getRoot(0), null, actors.size(), new SplitMix64(random.nextLong()));
+        car.x = (random.nextFloat()*2 - 1)*200;
+        car.y = (random.nextFloat()*2 - 1)*200;
+        car.direction = (random.nextFloat()*2 - 1)*(float) (2*Math.PI);
+        // The car itself is somewhere in the list and never senses itself
+        actors.add(random.nextInt(actors.size() + 1), car);
+        return car;
+    }
+
+    private static Car neighbour(Random random, ArrayList<Actor> actors) throws IOException {
+        Car neighbour = car(random, actors);
+        neighbour.radius = random.nextBoolean() ? Utility.CAR_RADIUS : Utility.PEDESTRIAN_RADIUS;
+        neighbour.speed = random.nextFloat()*Utility.CAR_SPEED_MAX;
+        neighbour.solid = random.nextInt(5) != 0;
+        return neighbour;
+    }
+
+    private static float nudge(float value, int ulps) {
+        for (int i = 0; i < ulps; i++) {
+            value = Math.nextUp(value);
+        }
+        for (int i = 0; i > ulps; i--) {
+            value = Math.nextDown(value);
+        }
+        return value;
+    }
+
+    // Every row and the single row reading with its speed must equal testing the sensor circles one by one
+    private static void assertSameReadings(String message, Car car, ArrayList<Actor> actors) {
+        double[] values = car.getSensorValues(actors).clone();
+        for (int row = 0; row < LAYOUT.getRowCount(); row++) {
+            int expected = firstActivated(car, row, actors);
+            assertEquals(message + " row " + row, expected, car.getSensorHit(row));
+            float value = expected < 0 ? 0 : 1 - ((expected*1.0f) / LAYOUT.getRowQuantity(row));
+            assertEquals(message + " row " + row, value, values[row], 0);
+        }
+
+        double[] single = car.getSensorValues(actors, 1);
+        int expected = firstActivated(car, 0, actors);
+        float speed = expected < 0 ? 0 : activatingActor(car, 0, LAYOUT.getRowOffset(0) + expected, actors).speed;
+        assertEquals(message, speed, single[1], 0);
+    }
+
+    private static int firstActivated(Car car, int row, ArrayList<Actor> actors) {
+        for (int i = 0; i < LAYOUT.getRowQuantity(row); i++) {
+            if (activatingActor(car, row, LAYOUT.getRowOffset(row) + i, actors) != null) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // The discrete sensor circle test the engine replaced, the first solid neighbour in the list wins
+    private static Actor activatingActor(Car car, int row, int sensor, ArrayList<Actor> actors) {
+        float x = LAYOUT.getSensorX(row, sensor, car);
+        float y = LAYOUT.getSensorY(row, sensor, car);
+        for (Actor actor : actors) {
+            if (actor == car || !actor.solid) {
+                continue;
+            }
+            if (Utility.distance(x, y, actor.x, actor.y) < LAYOUT.getSensorRadius(sensor) + actor.radius) {
+                return actor;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,172 @@
+package intersectionmanagement.simulator.control;
+
+import org.encog.engine.network.activation.ActivationFunction;
+import org.encog.engine.network.activation.ActivationSteepenedSigmoid;
+import org.encog.engine.network.activation.ActivationTANH;
+import org.encog.ml.data.basic.BasicMLData;
+import org.encog.neural.neat.NEATLink;
+import org.encog.neural.neat.NEATNetwork;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*
+Compares CompiledNEATNetwork bit for bit with NEATNetwork.compute on random networks shaped like the controllers',
+for each of the ways a network can be compiled
+ */
+public class CompiledNEATNetworkTest {
+    private static final int INPUTS = 14;
+    private static final int OUTPUTS = 2;
+    private static final int NETWORKS = 2000;
+    private static final int INPUTS_PER_NETWORK = 3;
+
+    // No loops and every output settles within activationCycles, so the network is run in one pass
+    @Test
+    public void feedForwardMatchesEncog() {
+        Random random = new Random(1);
+        int compared = 0;
+        while (compared < NETWORKS) {
+            NEATNetwork network = randomNetwork(random, false, 6);
+            CompiledNEATNetwork compiled = new CompiledNEATNetwork(network);
+            if (compiled.isFeedForward()) {
+                assertSameOutputs(network, compiled, random);
+                compared++;
+            }
+        }
+    }
+
+    // No loops, but some output is more links deep than there are passes, so it has not settled and the passes are run
+    @Test
+    public void deeperThanActivationCyclesMatchesEncog() {
+        Random random = new Random(2);
+        int compared = 0;
+        while (compared < NETWORKS) {
+            NEATNetwork network = randomNetwork(random, false, 2);
+            CompiledNEATNetwork compiled = new CompiledNEATNetwork(network);
+            if (!compiled.isFeedForward()) {
+                assertSameOutputs(network, compiled, random);
+                compared++;
+            }
+        }
+    }
+
+    @Test
+    public void recurrentMatchesEncog() {
+        Random random = new Random(3);
+        int compared = 0;
+        while (compared < NETWORKS) {
+            NEATNetwork network = randomNetwork(random, true, 6);
+            if (hasLoop(network)) {
+                CompiledNEATNetwork compiled = new CompiledNEATNetwork(network);
+                assertFalse(compiled.isFeedForward());
+                assertSameOutputs(network, compiled, random);
+                compared++;
+            }
+        }
+    }
+
+    @Test
+    public void linksIntoTheInputsAreIgnored() {
+        List<NEATLink> links = new ArrayList<>();
+        links.add(new NEATLink(1, 15, 0.5));
+        links.add(new NEATLink(15, 3, 2.0));
+        links.add(new NEATLink(15, 16, -1.5));
+        NEATNetwork network = new NEATNetwork(INPUTS, OUTPUTS, links, activationFunctions(new Random(4), 17));
+        network.setActivationCycles(2);
+        CompiledNEATNetwork compiled = new CompiledNEATNetwork(network);
+        assertTrue(compiled.isFeedForward());
+        assertSameOutputs(network, compiled, new Random(4));
+    }
+
+    /*
+    Up to 11 hidden neurons and 60 links, mixing the activation functions NEAT uses
+    Without loops the links only run from earlier to later neurons of a random order, so hidden neurons can feed
+    outputs, with loops any link can be drawn, including a neuron into itself
+     */
+    private static NEATNetwork randomNetwork(Random random, boolean loops, int maxActivationCycles) {
+        int neuronCount = 1 + INPUTS + OUTPUTS + random.nextInt(12);
+        int outputIndex = 1 + INPUTS;
+        List<Integer> order = new ArrayList<>();
+        for (int i = outputIndex; i < neuronCount; i++) {
+            order.add(i);
+        }
+        Collections.shuffle(order, random);
+        int[] rank = new int[neuronCount];
+        for (int i = 0; i < order.size(); i++) {
+            rank[order.get(i)] = i + 1;
+        }
+
+        List<NEATLink> links = new ArrayList<>();
+        int linkCount = random.nextInt(60);
+        for (int i = 0; i < linkCount; i++) {
+            int from = random.nextInt(neuronCount);
+            int to = outputIndex + random.nextInt(neuronCount - outputIndex);
+            if (loops || rank[from] < rank[to]) {
+                links.add(new NEATLink(from, to, random.nextGaussian()*3));
+            }
+        }
+        // Evolved networks keep their links sorted, the compiled network must not rely on it
+        if (random.nextBoolean()) {
+            Collections.sort(links);
+        }
+
+        NEATNetwork network = new NEATNetwork(INPUTS, OUTPUTS, links, activationFunctions(random, neuronCount));
+        network.setActivationCycles(1 + random.nextInt(maxActivationCycles));
+        return network;
+    }
+
+    private static ActivationFunction[] activationFunctions(Random random, int neuronCount) {
+        ActivationFunction[] functions = new ActivationFunction[neuronCount];
+        for (int i = 0; i < neuronCount; i++) {
+            functions[i] = random.nextBoolean() ? new ActivationSteepenedSigmoid() : new ActivationTANH();
+        }
+        return functions;
+    }
+
+    private static boolean hasLoop(NEATNetwork network) {
+        int neuronCount = network.getActivationFunctions().length;
+        boolean[][] reaches = new boolean[neuronCount][neuronCount];
+        for (NEATLink link : network.getLinks()) {
+            if (link.getToNeuron() >= network.getOutputIndex()) {
+                reaches[link.getFromNeuron()][link.getToNeuron()] = true;
+            }
+        }
+        for (int k = 0; k < neuronCount; k++) {
+            for (int i = 0; i < neuronCount; i++) {
+                for (int j = 0; j < neuronCount; j++) {
+                    reaches[i][j] |= reaches[i][k] && reaches[k][j];
+                }
+            }
+        }
+        for (int i = 0; i < neuronCount; i++) {
+            if (reaches[i][i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // One neuron buffer for every input, as a controller reuses it between cars
+    private static void assertSameOutputs(NEATNetwork network, CompiledNEATNetwork compiled, Random random) {
+        double[] neurons = compiled.newNeuronBuffer();
+        double[] output = new double[OUTPUTS];
+        for (int i = 0; i < INPUTS_PER_NETWORK; i++) {
+            double[] input = new double[INPUTS];
+            for (int j = 0; j < INPUTS; j++) {
+                input[j] = random.nextDouble()*2 - 1;
+            }
+            double[] expected = network.compute(new BasicMLData(input)).getData();
+            compiled.compute(input, output, neurons);
+            for (int j = 0; j < OUTPUTS; j++) {
+                assertEquals(Double.doubleToLongBits(expected[j]), Double.doubleToLongBits(output[j]));
+            }
+        }
+    }
+}
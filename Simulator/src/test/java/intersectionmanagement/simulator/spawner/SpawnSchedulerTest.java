@@ -0,0 +1,167 @@
+package intersectionmanagement.simulator.spawner;
+
+import intersectionmanagement.simulator.Simulator;
+import intersectionmanagement.simulator.track.CompiledTrack;
+import intersectionmanagement.simulator.track.TrackParser;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/*
+Compares the scheduled spawns with the per-step counters spawners used to have
+Each step those decremented the counter and spawned when it was 0 or less, then reset it
+ */
+public class SpawnSchedulerTest {
+    private static final int STEPS = 400;
+
+    // Counters of 0 and 1 both run out on the next step, longer ones count down
+    @Test
+    public void scriptedCountersSpawnOnTheOldSteps() throws IOException {
+        int[][] scripts = {{0}, {1}, {7}, {0, 0, 0}, {1, 1, 1}, {0, 1, 0, 1}, {1, 0, 1, 0}, {5, 0, 1, 3, 1, 0, 12},
+                {0, 9, 1, 1, 0, 4}};
+        for (int[] script : scripts) {
+            assertSameSpawns(new int[][]{script}, new int[]{0});
+        }
+
+        Random random = new Random(1);
+        for (int run = 0; run < 200; run++) {
+            int spawners = 1 + random.nextInt(5);
+            int[][] counters = new int[spawners][];
+            int[] firstSteps = new int[spawners];
+            for (int i = 0; i < spawners; i++) {
+                counters[i] = new int[1 + random.nextInt(40)];
+                for (int j = 0; j < counters[i].length; j++) {
+                    // Mostly the edge cases, now and then a longer wait
+                    counters[i][j] = random.nextInt(4) == 0 ? random.nextInt(20) : random.nextInt(2);
+                }
+                firstSteps[i] = random.nextInt(30);
+            }
+            assertSameSpawns(counters, firstSteps);
+        }
+    }
+
+    // Real spawners at rates of one and two, where the drawn counters are 0 and 1, and at longer rates
+    @Test
+    public void carSpawnersSpawnOnTheOldSteps() throws IOException {
+        CompiledTrack track = TrackParser.loadTrack("tracks/crossing.json", false);
+        double[][] params = {{1}, {2}, {3}, {25}};
+        for (int seed = 1; seed <= 20; seed++) {
+            for (double[] rate : params) {
+                Simulator sim = new Simulator(seed);
+                CarSpawner spawner = new CarSpawner(sim, track, track.getRoot(0), null, STEPS,
+                        CarSpawner.Function.CONSTANT, rate, 2);
+                List<Integer> expected = oldCarSpawns(spawner.copy(sim));
+
+                SpawnScheduler scheduler = new SpawnScheduler();
+                scheduler.add(spawner, 0);
+                List<Integer> actual = new ArrayList<>();
+                for (int step = 0; step < STEPS; step++) {
+                    int spawned = spawner.spawned;
+                    scheduler.spawnDue(step);
+                    for (int i = spawned; i < spawner.spawned; i++) {
+                        actual.add(step);
+                    }
+                }
+                assertEquals("seed " + seed + " rate " + rate[0], expected, actual);
+            }
+        }
+    }
+
+    // The old CarSpawner.act, stepped by hand on a copy of the spawner
+    private static List<Integer> oldCarSpawns(CarSpawner spawner) {
+        List<Integer> spawns = new ArrayList<>();
+        for (int step = 0; step < STEPS; step++) {
+            spawner.counter--;
+            if (spawner.counter <= 0) {
+                int rate = spawner.getRate();
+                spawner.counter = rate + spawner.rng.nextInt((int) (rate*spawner.randomness));
+                spawner.rng.split();
+                spawns.add(step);
+            }
+            if (spawner.steps < spawner.simulationSteps) {
+                spawner.steps++;
+            }
+        }
+        return spawns;
+    }
+
+    private static void assertSameSpawns(int[][] counters, int[] firstSteps) throws IOException {
+        // Old: every spawner added so far is stepped once a step, in the order they were added
+        List<String> expected = new ArrayList<>();
+        int[] counter = new int[counters.length];
+        int[] next = new int[counters.length];
+        for (int i = 0; i < counters.length; i++) {
+            counter[i] = counters[i][0];
+            next[i] = 1;
+        }
+        for (int step = 0; step < STEPS; step++) {
+            for (int i = 0; i < counters.length; i++) {
+                if (step < firstSteps[i] || next[i] > counters[i].length) {
+                    continue;
+                }
+                counter[i]--;
+                if (counter[i] <= 0) {
+                    expected.add(step + ":" + i);
+                    if (next[i] < counters[i].length) {
+                        counter[i] = counters[i][next[i]];
+                    }
+                    next[i]++;
+                }
+            }
+        }
+
+        CompiledTrack track = TrackParser.loadTrack("tracks/crossing.json", false);
+        Simulator sim = new Simulator(1);
+        List<String> actual = new ArrayList<>();
+        SpawnScheduler scheduler = new SpawnScheduler();
+        for (int i = 0; i < counters.length; i++) {
+            scheduler.add(new ScriptedSpawner(sim, track, counters[i], i, firstSteps[i], actual), firstSteps[i]);
+        }
+        for (int step = 0; step < STEPS; step++) {
+            scheduler.spawnDue(step);
+        }
+        assertEquals(expected, actual);
+    }
+
+    // Spawns nothing, only records the step it is asked to on and resets its counter from a script
+    private static class ScriptedSpawner extends Spawner {
+        private final int[] counters;
+        private final int index;
+        private final int firstStep;
+        private final List<String> spawns;
+
+        ScriptedSpawner(Simulator simulator, CompiledTrack track, int[] counters, int index, int firstStep,
+                        List<String> spawns) {
+            super(simulator, track, track.getRoot(0));
+            this.counters = counters;
+            this.index = index;
+            this.firstStep = firstStep;
+            this.spawns = spawns;
+        }
+
+        @Override
+        public Spawner copy(Simulator simulator) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int firstSpawn() {
+            return firstSpawnAge(counters[0]);
+        }
+
+        @Override
+        public int spawn(int age) {
+            spawned++;
+            spawns.add((firstStep + age) + ":" + index);
+            if (spawned == counters.length) {
+                return -1;
+            }
+            return nextSpawnAge(age, counters[spawned]);
+        }
+    }
+}
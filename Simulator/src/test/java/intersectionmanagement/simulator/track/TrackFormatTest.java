@@ -0,0 +1,128 @@
+package intersectionmanagement.simulator.track;
+
+import intersectionmanagement.simulator.Utility;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class TrackFormatTest {
+    private static final String[] TRACKS = {"tracks/crossing.json", "tracks/four-way-3-lane.json",
+            "tracks/princess-anne.json", "tracks/pedestrians.json"};
+
+    @Test
+    public void writtenTracksReadBackEqual() throws IOException {
+        for (String trackPath : TRACKS) {
+            Path file = Files.createTempFile("track", TrackFormat.EXTENSION);
+            try {
+                TrackFormat.write(trackPath, file);
+                assertEquals(TrackParser.getName(trackPath), TrackFormat.readName(file.toString()));
+                for (boolean pedestrian : new boolean[]{false, true}) {
+                    assertSameTrack(trackPath, TrackParser.compileTrack(trackPath, pedestrian),
+                            TrackFormat.read(file.toString(), pedestrian));
+                }
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void damagedFilesAreRejected() throws IOException {
+        Path file = Files.createTempFile("track", TrackFormat.EXTENSION);
+        try {
+            TrackFormat.write(TRACKS[1], file);
+            byte[] track = Files.readAllBytes(file);
+            int nameLength = ByteBuffer.wrap(track).getInt(8);
+            int carTrack = 12 + nameLength;
+
+            // Cut off in the header, in the car graph and in the pedestrian graph
+            for (int length : new int[]{0, 10, carTrack + 8, carTrack + 100, track.length - 1}) {
+                assertRejected(file, Arrays.copyOf(track, length));
+            }
+            // A name longer than the file, a negative node count, more links than the file holds
+            assertRejected(file, withInt(track, 8, Integer.MAX_VALUE));
+            assertRejected(file, withInt(track, carTrack, -1));
+            assertRejected(file, withInt(track, carTrack + 4, Integer.MAX_VALUE));
+            // A root past the last node
+            int nodes = ByteBuffer.wrap(track).getInt(carTrack);
+            int links = ByteBuffer.wrap(track).getInt(carTrack + 4);
+            int roots = carTrack + 12 + nodes*(4 + 4 + 1 + 4) + 4 + links*4;
+            assertRejected(file, withInt(track, roots, nodes));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    // A track file rewritten on disk is loaded again, an unchanged one comes from the cache
+    @Test
+    public void rewrittenTrackFilesAreReloaded() throws IOException {
+        JSONObject track = new JSONObject(Utility.loadResource("tracks/crossing.json"));
+        Path file = Files.createTempFile("track", ".json");
+        try {
+            Files.write(file, track.toString().getBytes(StandardCharsets.UTF_8));
+            Files.setLastModifiedTime(file, FileTime.fromMillis(1000000));
+            CompiledTrack first = TrackParser.loadTrack(file.toString(), false);
+            assertSame(first, TrackParser.loadTrack(file.toString(), false));
+
+            JSONArray curves = track.getJSONArray("curves");
+            curves.getJSONObject(0).put("x_0", 20.5);
+            Files.write(file, track.toString().getBytes(StandardCharsets.UTF_8));
+            Files.setLastModifiedTime(file, FileTime.fromMillis(2000000));
+            CompiledTrack second = TrackParser.loadTrack(file.toString(), false);
+            assertNotEquals(first.getX(first.getRoot(0)), second.getX(second.getRoot(0)), 0);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void assertSameTrack(String message, CompiledTrack expected, CompiledTrack actual) {
+        assertEquals(message, expected.getNodeCount(), actual.getNodeCount());
+        for (int node = 0; node < expected.getNodeCount(); node++) {
+            assertEquals(message, Float.floatToIntBits(expected.getX(node)), Float.floatToIntBits(actual.getX(node)));
+            assertEquals(message, Float.floatToIntBits(expected.getY(node)), Float.floatToIntBits(actual.getY(node)));
+            assertEquals(message, expected.isActive(node), actual.isActive(node));
+            assertEquals(message, expected.getSuccessorCount(node), actual.getSuccessorCount(node));
+            for (int i = 0; i < expected.getSuccessorCount(node); i++) {
+                assertEquals(message, expected.getSuccessor(node, i), actual.getSuccessor(node, i));
+            }
+        }
+        assertEquals(message, expected.getRootCount(), actual.getRootCount());
+        for (int i = 0; i < expected.getRootCount(); i++) {
+            assertEquals(message, expected.getRoot(i), actual.getRoot(i));
+        }
+    }
+
+    private static byte[] withInt(byte[] track, int index, int value) {
+        byte[] changed = track.clone();
+        ByteBuffer.wrap(changed).putInt(index, value);
+        return changed;
+    }
+
+    // Only one of the two graphs may be damaged, so only one of the two reads has to fail
+    private static void assertRejected(Path file, byte[] track) throws IOException {
+        Files.write(file, track);
+        for (boolean pedestrian : new boolean[]{false, true}) {
+            try {
+                TrackFormat.read(file.toString(), pedestrian);
+                if (pedestrian) {
+                    fail("A damaged track of " + track.length + " bytes was read");
+                }
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package intersectionmanagement.trial;
+
+import intersectionmanagement.simulator.Simulator;
+import intersectionmanagement.simulator.control.NeuralNetworkController;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+Runs one controller over many seeds without a window, one trial per thread, and prints a JSON line per trial as soon
+as it finishes, so lines come out in the order the trials finish rather than in seed order
+A trial that fails prints its seed and an "error" instead of its results
+The network file holds a JSON object with a "neural_network" array, as logged for the best network of a generation
+Seeds are a comma separated list of seeds and inclusive ranges, like 1-1000 or 3,7,10-20
+Usage: BatchRunner <parameters file> <network file> <seeds> [threads]
+ */
+public class BatchRunner {
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        String parameters = new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.UTF_8);
+        String network = new String(Files.readAllBytes(Paths.get(args[1])), StandardCharsets.UTF_8);
+        List<Integer> seeds = parseSeeds(args[2]);
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        JSONObject parametersJSON = new JSONObject(parameters);
+        parametersJSON.remove("neural_network");
+        // Every trial's cars share the one controller
+        NeuralNetworkController controller = new NeuralNetworkController(
+                Trial.readNetwork(new JSONObject(network).getJSONArray("neural_network")));
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CompletionService<String> results = new ExecutorCompletionService<>(executor);
+        try {
+            for (int seed : seeds) {
+                parametersJSON.put("seed", seed);
+                Trial trial = new Trial(parametersJSON.toString(), controller);
+                results.submit(() -> runTrial(trial, seed));
+            }
+            for (int i = 0; i < seeds.size(); i++) {
+                System.out.println(results.take().get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /*
+    A trial that fails gives a line with its seed and the error, and the other trials carry on
+     */
+    private static String runTrial(Trial trial, int seed) {
+        JSONObject result = new JSONObject();
+        result.put("seed", seed);
+        long startTime = System.nanoTime();
+        try {
+            Simulator sim = trial.runSimulation();
+            result.put("collisions", sim.collisions/2);
+            result.put("finished_cars", sim.finishedCars);
+            result.put("spawned_cars", sim.spawnedCars);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            result.put("error", e.toString());
+        }
+        // Milliseconds are plenty, and keep the lines short
+        result.put("wall_time", Math.round((System.nanoTime() - startTime)/1e6)/1e3);
+        return result.toString();
+    }
+
+    private static List<Integer> parseSeeds(String seedList) {
+        List<Integer> seeds = new ArrayList<>();
+        for (String part : seedList.split(",")) {
+            int dash = part.indexOf('-', 1);
+            if (dash < 0) {
+                seeds.add(Integer.parseInt(part.trim()));
+            } else {
+                int first = Integer.parseInt(part.substring(0, dash).trim());
+                int last = Integer.parseInt(part.substring(dash + 1).trim());
+                if (last < first) {
+                    throw new IllegalArgumentException(String.format("%s is not a valid seed range", part));
+                }
+                for (int seed = first; seed <= last; seed++) {
+                    seeds.add(seed);
+                }
+            }
+        }
+        return seeds;
+    }
+}
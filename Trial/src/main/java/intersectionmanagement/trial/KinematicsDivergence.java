@@ -0,0 +1,77 @@
+package intersectionmanagement.trial;
+
+import intersectionmanagement.simulator.Simulator;
+import intersectionmanagement.simulator.car.Car;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+Runs one trial with the exact and the fast kinematics side by side and reports how far the cars drift apart
+Cars are matched by id, so a car only counts while it exists in both simulations
+Usage: KinematicsDivergence <parameters file> [report interval in steps]
+ */
+public class KinematicsDivergence {
+
+    public static void main(String[] args) throws IOException {
+        String parameters = new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.UTF_8);
+        int interval = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+        Trial trial = new Trial(parameters);
+        Simulator exact = trial.createSimulator();
+        exact.kinematics = Simulator.Kinematics.EXACT;
+        Simulator fast = trial.createSimulator();
+        fast.kinematics = Simulator.Kinematics.FAST;
+
+        long exactNanos = 0;
+        long fastNanos = 0;
+        for (int i = 1; i <= trial.getStepLimit(); i++) {
+            long startTime = System.nanoTime();
+            exact.step();
+            exactNanos += System.nanoTime() - startTime;
+
+            startTime = System.nanoTime();
+            fast.step();
+            fastNanos += System.nanoTime() - startTime;
+
+            if (i % interval == 0) {
+                report(i, exact, fast);
+            }
+        }
+
+        System.out.printf("exact: collisions %d, finished %d, %.3fs%n",
+                exact.collisions/2, exact.finishedCars, exactNanos/1e9);
+        System.out.printf("fast:  collisions %d, finished %d, %.3fs%n",
+                fast.collisions/2, fast.finishedCars, fastNanos/1e9);
+    }
+
+    private static void report(int step, Simulator exact, Simulator fast) {
+        Map<Long, Car> exactCars = new HashMap<>();
+        for (Car car : exact.carArray) {
+            exactCars.put(car.id, car);
+        }
+
+        int matched = 0;
+        double total = 0;
+        double max = 0;
+        for (Car car : fast.carArray) {
+            Car other = exactCars.get(car.id);
+            if (other == null) {
+                continue;
+            }
+            double dx = car.x - other.x;
+            double dy = car.y - other.y;
+            double divergence = Math.sqrt(dx*dx + dy*dy);
+            matched++;
+            total += divergence;
+            max = Math.max(max, divergence);
+        }
+
+        System.out.printf("step %d: %d exact cars, %d fast cars, %d matched, mean divergence %.6f, max divergence %.6f%n",
+                step, exact.carArray.size(), fast.carArray.size(), matched, matched > 0 ? total/matched : 0, max);
+    }
+}
@@ -2,10 +2,10 @@ package intersectionmanagement.trial;
 
 import intersectionmanagement.simulator.Utility;
 import intersectionmanagement.simulator.car.Car;
-import intersectionmanagement.simulator.car.Sensor;
+import intersectionmanagement.simulator.car.SensorLayout;
+import intersectionmanagement.simulator.control.NeuralNetworkController;
 import intersectionmanagement.simulator.pedestrian.Pedestrian;
-import intersectionmanagement.simulator.track.Node;
-import org.apache.commons.lang3.SerializationUtils;
+import intersectionmanagement.simulator.track.CompiledTrack;
 import org.encog.neural.neat.NEATLink;
 import org.encog.neural.neat.NEATNetwork;
 import org.encog.neural.networks.BasicNetwork;
@@ -17,8 +17,6 @@ import org.lwjgl.opengl.DisplayMode;
 import org.lwjgl.opengl.PixelFormat;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Random;
 
 import static org.lwjgl.opengl.GL11.*;
@@ -39,7 +37,7 @@ public class Renderer {
     private static ArrayList<Float> nodeXs;
     private static ArrayList<Float> nodeYs;
 
-    static void setupWindow(String title, Trial trial, float scale, int width, int height, byte[] serializedNetwork) throws LWJGLException {
+    static void setupWindow(String title, Trial trial, float scale, int width, int height, NeuralNetworkController controller) throws LWJGLException {
         Display.setDisplayMode(new DisplayMode(width, height));
         Display.create(new PixelFormat(8,0,0,8));
         Display.setTitle(String.format("IntersectionManagement - %s", title));
@@ -53,17 +51,8 @@ public class Renderer {
         selectedActors = new ArrayList<>();
         lastSelectedActor = null;
 
-        try {
-            neatNetwork = SerializationUtils.deserialize(serializedNetwork);
-        } catch (ClassCastException e) {
-            //System.out.println("Wasn't a NEAT network");
-        }
-
-        try {
-            basicNetwork = SerializationUtils.deserialize(serializedNetwork);
-        } catch (ClassCastException e) {
-            //System.out.println("Wasn't a conventional network");
-        }
+        neatNetwork = controller != null ? controller.getNEATNetwork() : null;
+        basicNetwork = controller != null ? controller.getBasicNetwork() : null;
 
         if (neatNetwork != null) {
             neatNetwork.getLinks();
@@ -120,34 +109,26 @@ public class Renderer {
         }
     }
 
-    static void drawActors(ArrayList<Car> cars, ArrayList<Pedestrian> pedestrians, List<Node> track) {
+    static void drawActors(ArrayList<Car> cars, ArrayList<Pedestrian> pedestrians, CompiledTrack track) {
         glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
         glClearColor(binToFloat(0),binToFloat(43),binToFloat(54),1);
 
-        List<Node> seenNodes = new LinkedList<>();
-        List<Node> currentNodes = new LinkedList<>();
-        List<Node> nextNodes = new LinkedList<>();
-        currentNodes.addAll(track);
-
-        while (!currentNodes.isEmpty()) {
-            for (Node node : currentNodes) {
-                for (Node nextNode : node.nextNodes) {
-                    if (node.active) {
-                        drawLine(node.x, node.y, nextNode.x, nextNode.y, 2, binToFloat(131), binToFloat(148), binToFloat(150), 1);
-                        drawRoad(node.x, node.y, nextNode.x, nextNode.y);
-                    }
-                    else {
-                        drawLine(node.x, node.y, nextNode.x, nextNode.y, 2, binToFloat(88), binToFloat(110), binToFloat(117), 1);
-                        drawRoad(node.x, node.y, nextNode.x, nextNode.y);
-                    }
-                    nextNodes.add(nextNode);
+        for (int node = 0; node < track.getNodeCount(); node++) {
+            float x = track.getX(node);
+            float y = track.getY(node);
+            for (int i = 0; i < track.getSuccessorCount(node); i++) {
+                int nextNode = track.getSuccessor(node, i);
+                float nextX = track.getX(nextNode);
+                float nextY = track.getY(nextNode);
+                if (track.isActive(node)) {
+                    drawLine(x, y, nextX, nextY, 2, binToFloat(131), binToFloat(148), binToFloat(150), 1);
+                    drawRoad(x, y, nextX, nextY);
+                }
+                else {
+                    drawLine(x, y, nextX, nextY, 2, binToFloat(88), binToFloat(110), binToFloat(117), 1);
+                    drawRoad(x, y, nextX, nextY);
                 }
             }
-            currentNodes.clear();
-            currentNodes.addAll(nextNodes);
-            currentNodes.removeAll(seenNodes);
-            seenNodes.addAll(nextNodes);
-            nextNodes.clear();
         }
 
         for (Car actor : cars) {
@@ -166,18 +147,18 @@ public class Renderer {
                 drawQuad(actorX, actorY, binToFloat(133), binToFloat(153), binToFloat(0), 1);
             }
             if (selectedActors.contains(actor)) {
-                for (List<Sensor> sensorRow : actor.getSensors()) {
-                    int count = 0;
-                    for (Sensor sensor : sensorRow) {
-                        count++;
-                        if (count > 5) {
-                            break;
-                        }
-                        if (sensor.getLastActivated()) {
-                            drawCircle(20, sensor.getX(actor), sensor.getY(actor), sensor.radius, binToFloat(211), binToFloat(54), binToFloat(130), 0.2f);
+                SensorLayout layout = actor.sensorLayout;
+                for (int row = 0; row < layout.getRowCount(); row++) {
+                    int shown = Math.min(5, layout.getRowQuantity(row));
+                    for (int i = 0; i < shown; i++) {
+                        int sensor = layout.getRowOffset(row) + i;
+                        float sensorX = layout.getSensorX(row, sensor, actor);
+                        float sensorY = layout.getSensorY(row, sensor, actor);
+                        if (i == actor.getSensorHit(row)) {
+                            drawCircle(20, sensorX, sensorY, layout.getSensorRadius(sensor), binToFloat(211), binToFloat(54), binToFloat(130), 0.2f);
                             break;
                         } else {
-                            drawCircle(20, sensor.getX(actor), sensor.getY(actor), sensor.radius, binToFloat(42), binToFloat(161), binToFloat(152), 0.1f);
+                            drawCircle(20, sensorX, sensorY, layout.getSensorRadius(sensor), binToFloat(42), binToFloat(161), binToFloat(152), 0.1f);
                         }
                     }
 
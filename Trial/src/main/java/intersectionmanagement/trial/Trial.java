@@ -1,17 +1,23 @@
 package intersectionmanagement.trial;
 
-import intersectionmanagement.simulator.Actor;
+import intersectionmanagement.simulator.BatchSimulator;
 import intersectionmanagement.simulator.Simulator;
+import intersectionmanagement.simulator.StepMetrics;
 import intersectionmanagement.simulator.car.Car;
+import intersectionmanagement.simulator.control.NeuralNetworkController;
 import intersectionmanagement.simulator.pedestrian.Pedestrian;
 import intersectionmanagement.simulator.spawner.CarSpawner;
 import intersectionmanagement.simulator.spawner.PedestrianSpawner;
-import intersectionmanagement.simulator.track.Node;
+import intersectionmanagement.simulator.spawner.Spawner;
+import intersectionmanagement.simulator.track.CompiledTrack;
 import intersectionmanagement.simulator.track.TrackParser;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
 import java.util.logging.Logger;
 
 import org.json.JSONArray;
@@ -33,8 +39,17 @@ public class Trial {
     private int seed;
     private String trackFile;
     private SpawnerFactory spawnerFactory;
+    // Length of the trial in base steps, it takes simulationSteps/dt simulator steps
     private int simulationSteps;
-    private byte[] serializedNetwork;
+    private float dt;
+    // Deserialized once and shared by every car of the trial
+    private NeuralNetworkController controller;
+    private Simulator.Engine engine;
+    private Simulator.Kinematics kinematics;
+    private boolean parallel;
+    private boolean sleeping;
+    private WarmupCache warmupCache;
+    private boolean metrics;
 
     private int pedestrianRate;
     private float pedestrianRandomness;
@@ -42,17 +57,33 @@ public class Trial {
     private boolean simulating = true;
 
     public Trial(String parameters) {
+        this(parameters, null);
+    }
+
+    /*
+    Runs the trial with a controller that is already set up, so trials of the same network can share one
+    Without a controller the network in the parameters is deserialized
+     */
+    public Trial(String parameters, NeuralNetworkController controller) {
         JSONObject jsonParameters = new JSONObject(parameters);
         seed = jsonParameters.getInt("seed");
         trackFile = jsonParameters.getString("track");
         simulationSteps = jsonParameters.getInt("steps");
-        if (jsonParameters.has("neural_network")) {
-            JSONArray jsonSerializedNetwork = jsonParameters.getJSONArray("neural_network");
-            serializedNetwork = new byte[jsonSerializedNetwork.length()];
-            for (int i = 0; i < jsonSerializedNetwork.length(); i++) {
-                serializedNetwork[i] = (byte) jsonSerializedNetwork.getInt(i);
-            }
+        dt = (float) jsonParameters.optDouble("dt", 1);
+        if (!(dt > 0 && dt <= Simulator.MAX_DT)) {
+            LOGGER.severe(String.format("dt must be greater than 0 and at most %.2f, not %s", Simulator.MAX_DT, dt));
+            throw new IllegalArgumentException("No valid dt specified in trial parameters");
         }
+        engine = Simulator.Engine.valueOf(jsonParameters.optString("engine", "object").toUpperCase());
+        kinematics = Simulator.Kinematics.valueOf(jsonParameters.optString("kinematics", "exact").toUpperCase());
+        // Only the array engine can decide in parallel
+        parallel = jsonParameters.optBoolean("parallel", false);
+        sleeping = jsonParameters.optBoolean("sleeping", false);
+        metrics = jsonParameters.optBoolean("metrics", false);
+        if (controller == null && jsonParameters.has("neural_network")) {
+            controller = new NeuralNetworkController(readNetwork(jsonParameters.getJSONArray("neural_network")));
+        }
+        this.controller = controller;
 
         JSONObject spawner = jsonParameters.getJSONObject("spawner");
         String spawnerType = spawner.getString("type");
@@ -64,20 +95,20 @@ public class Trial {
             case "constant":
                 double[] params = new double[1];
                 params[0] = spawner.getInt("period");
-                spawnerFactory = new SpawnerFactory(CONSTANT, serializedNetwork, simulationSteps, params, randomness);
+                spawnerFactory = new SpawnerFactory(CONSTANT, simulationSteps, params, randomness);
                 break;
             case "linear":
                 params = new double[2];
                 params[0] = spawner.getInt("min_period");
                 params[1] = spawner.getInt("max_period");
-                spawnerFactory = new SpawnerFactory(LINEAR, serializedNetwork, simulationSteps, params, randomness);
+                spawnerFactory = new SpawnerFactory(LINEAR, simulationSteps, params, randomness);
                 break;
             case "sin":
                 params = new double[3];
                 params[0] = spawner.getDouble("period_mul");
                 params[1] = spawner.getInt("min_period");
                 params[2] = spawner.getInt("max_period");
-                spawnerFactory = new SpawnerFactory(SIN, serializedNetwork, simulationSteps, params, randomness);
+                spawnerFactory = new SpawnerFactory(SIN, simulationSteps, params, randomness);
                 break;
             default:
                 LOGGER.severe(String.format("%s is not a valid spawner type", spawnerType));
@@ -86,25 +117,136 @@ public class Trial {
         this.spawnerFactory = spawnerFactory;
     }
 
-    public Simulator runSimulation() {
-        try {
-            List<Node> track = TrackParser.parseTrack(trackFile, false);
-            Simulator sim = new Simulator(seed);
-            for (Node startNode : track) {
-                sim.addActor(spawnerFactory.getSpawner(sim, startNode));
+    static byte[] readNetwork(JSONArray jsonSerializedNetwork) {
+        byte[] serializedNetwork = new byte[jsonSerializedNetwork.length()];
+        for (int i = 0; i < jsonSerializedNetwork.length(); i++) {
+            serializedNetwork[i] = (byte) jsonSerializedNetwork.getInt(i);
+        }
+        return serializedNetwork;
+    }
+
+    /*
+    Sets up a simulator with the spawners of this trial, ready to step
+     */
+    public Simulator createSimulator() throws IOException {
+        return createSimulator(controller);
+    }
+
+    private Simulator createSimulator(NeuralNetworkController controller) throws IOException {
+        CompiledTrack track = TrackParser.loadTrack(trackFile, false);
+        Simulator sim = new Simulator(seed, engine);
+        sim.kinematics = kinematics;
+        sim.setDt(dt);
+        if (parallel) {
+            sim.pool = ForkJoinPool.commonPool();
+        }
+        sim.sleeping = sleeping;
+        if (metrics) {
+            sim.metrics = new StepMetrics();
+        }
+        for (int i = 0; i < track.getRootCount(); i++) {
+            sim.addSpawner(spawnerFactory.getSpawner(sim, track, track.getRoot(i), controller));
+        }
+
+        CompiledTrack pedestrianTrack = TrackParser.loadTrack(trackFile, true);
+        for (int i = 0; i < pedestrianTrack.getRootCount(); i++) {
+            sim.addSpawner(new PedestrianSpawner(sim, pedestrianTrack, pedestrianTrack.getRoot(i), simulationSteps, pedestrianRate, pedestrianRandomness));
+        }
+        return sim;
+    }
+
+    /*
+    Until the first car reaches an active node every car is driven by the heuristic controller, so the network being
+    evaluated makes no difference to that prefix of the trial
+    With a cache, the trial resumes from a copy of the prefix of any earlier trial with the same setup, and otherwise
+    adds its own prefix to it
+     */
+    public void setWarmupCache(WarmupCache warmupCache) {
+        this.warmupCache = warmupCache;
+    }
+
+    /*
+    Sets up a simulator that has already run this trial's warm-up prefix, with this trial's network
+     */
+    public Simulator createWarmedUpSimulator(WarmupCache warmups) throws IOException {
+        String key = getWarmupKey();
+        Simulator warmup = warmups.get(key);
+        if (warmup == null) {
+            // Run outside the cache so other setups are not held up, two threads may both run the same prefix
+            warmup = createSimulator(null);
+            while (warmup.stepCount < getStepLimit() && !isControllerActive(warmup)) {
+                warmup.step();
             }
+            warmup = warmups.add(key, warmup);
+        }
 
-            List<Node> pedestrianTrack = TrackParser.parseTrack(trackFile, true);
-            for (Node startNode : pedestrianTrack) {
-                sim.addActor(new PedestrianSpawner(sim, startNode, simulationSteps, pedestrianRate, pedestrianRandomness));
+        // Only the steps after the prefix are measured
+        Simulator sim = warmup.snapshot();
+        sim.pool = parallel ? ForkJoinPool.commonPool() : null;
+        sim.metrics = metrics ? new StepMetrics() : null;
+        for (int i = 0; i < sim.spawnScheduler.getSpawnerCount(); i++) {
+            Spawner spawner = sim.spawnScheduler.getSpawner(i);
+            if (spawner instanceof CarSpawner) {
+                ((CarSpawner) spawner).controller = controller;
             }
+        }
+        for (Car car : sim.carArray) {
+            car.controller = controller;
+        }
+        return sim;
+    }
+
+    // Whether any car would use its network on the next step
+    private static boolean isControllerActive(Simulator sim) {
+        for (Car car : sim.carArray) {
+            if (car.track.isActive(car.currentNode)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Everything but the network that decides how a trial runs
+    private String getWarmupKey() {
+        return String.join(" ", trackFile, String.valueOf(seed), String.valueOf(simulationSteps), String.valueOf(dt),
+                engine.name(), kinematics.name(), String.valueOf(sleeping), spawnerFactory.function.name(),
+                Arrays.toString(spawnerFactory.params), String.valueOf(spawnerFactory.randomDenominator),
+                String.valueOf(pedestrianRate), String.valueOf(pedestrianRandomness));
+    }
+
+    public int getSimulationSteps() {
+        return simulationSteps;
+    }
+
+    // Number of simulator steps the trial runs for
+    public int getStepLimit() {
+        return (int) Math.ceil(simulationSteps/(double) dt);
+    }
+
+    public Simulator runSimulation() {
+        return runSimulation(sim -> false);
+    }
 
-            long startTime = System.nanoTime();
-            for (int i = 0; i < simulationSteps; i++) {
+    /*
+    Runs the simulation, checking the stop condition after every step
+    If it stops the run before all the steps are done, the returned simulator has stoppedEarly set
+    A run resumed from the warm-up cache only checks the condition once for the whole prefix
+     */
+    public Simulator runSimulation(Predicate<Simulator> stopCondition) {
+        try {
+            TrialEvent event = new TrialEvent();
+            event.begin();
+            Simulator sim = newSimulator();
+
+            while (sim.stepCount < getStepLimit()) {
+                if (sim.stepCount > 0 && stopCondition.test(sim)) {
+                    sim.stoppedEarly = true;
+                    break;
+                }
                 sim.step();
             }
-            float seconds = (System.nanoTime() - startTime) / 1000000000.0f;
 
+            commitEvent(event, sim);
             return sim;
         } catch (IOException e) {
             e.printStackTrace();
@@ -112,21 +254,117 @@ public class Trial {
         throw new RuntimeException("Failed to run simulation");
     }
 
-    public void runSimulationRendered() throws LWJGLException, IOException {
-        ArrayList<Car> cars = new ArrayList<>();
-        ArrayList<Pedestrian> pedestrians = new ArrayList<>();
-        Renderer.setupWindow(TrackParser.getName(trackFile), this,3.5f, 800, 800, serializedNetwork);
+    private void commitEvent(TrialEvent event, Simulator sim) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.track = trackFile;
+            event.seed = seed;
+            event.steps = getStepLimit();
+            event.stepsRun = sim.stepCount;
+            event.collisions = sim.collisions/2;
+            event.finishedCars = sim.finishedCars;
+            event.stoppedEarly = sim.stoppedEarly;
+            event.commit();
+        }
+    }
+
+    private Simulator newSimulator() throws IOException {
+        return warmupCache != null ? createWarmedUpSimulator(warmupCache) : createSimulator();
+    }
+
+    /*
+    Runs several trials together in a BatchSimulator, which needs them all to use the array engine and the same
+    kinematics
+    Each simulator gives the same results as running its trial alone, and leaves the batch when its steps are done
+    The stop condition is checked on the whole batch after every step, and stops every simulator still running
+    With metrics, the integration the simulators shared is added to the first simulator's metrics
+    Every trial's flight recorder event spans the whole batch
+     */
+    public static List<Simulator> runSimulationBatch(List<Trial> trials, Predicate<BatchSimulator> stopCondition) {
         try {
-            List<Node> track = TrackParser.parseTrack(trackFile, false);
-            Simulator sim = new Simulator(seed);
-            for (Node startNode : track) {
-                sim.addActor(spawnerFactory.getSpawner(sim, startNode));
+            List<TrialEvent> events = new ArrayList<>();
+            for (int w = 0; w < trials.size(); w++) {
+                TrialEvent event = new TrialEvent();
+                event.begin();
+                events.add(event);
+            }
+            List<Simulator> sims = new ArrayList<>();
+            boolean parallel = false;
+            for (Trial trial : trials) {
+                sims.add(trial.newSimulator());
+                parallel |= trial.parallel;
+            }
+            BatchSimulator batch = new BatchSimulator(sims);
+            if (parallel) {
+                batch.pool = ForkJoinPool.commonPool();
+            }
+            if (sims.get(0).metrics != null) {
+                batch.metrics = new StepMetrics();
+            }
+
+            boolean stepped = false;
+            while (true) {
+                for (int w = 0; w < trials.size(); w++) {
+                    if (batch.isRunning(w) && sims.get(w).stepCount >= trials.get(w).getStepLimit()) {
+                        batch.stop(w);
+                    }
+                }
+                if (batch.getRunningCount() == 0) {
+                    break;
+                }
+                if (stepped && stopCondition.test(batch)) {
+                    for (int w = 0; w < trials.size(); w++) {
+                        if (batch.isRunning(w)) {
+                            sims.get(w).stoppedEarly = true;
+                            batch.stop(w);
+                        }
+                    }
+                    break;
+                }
+                batch.step();
+                stepped = true;
+            }
+            if (batch.metrics != null) {
+                sims.get(0).metrics.merge(batch.metrics);
+            }
+            for (int w = 0; w < trials.size(); w++) {
+                trials.get(w).commitEvent(events.get(w), sims.get(w));
             }
 
-            List<Node> pedestrianTrack = TrackParser.parseTrack(trackFile, true);
-            for (Node startNode : pedestrianTrack) {
-                sim.addActor(new PedestrianSpawner(sim, startNode, simulationSteps, pedestrianRate, pedestrianRandomness));
+            return sims;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        throw new RuntimeException("Failed to run simulation batch");
+    }
+
+    /*
+    Stops a run once it has more colliding pairs than the budget
+     */
+    public static Predicate<Simulator> collisionBudget(int budget) {
+        return sim -> sim.collisions/2 > budget;
+    }
+
+    /*
+    Stops a batch once all of its simulators together have more colliding pairs than the budget
+     */
+    public static Predicate<BatchSimulator> batchCollisionBudget(int budget) {
+        return batch -> {
+            int collisions = 0;
+            for (int w = 0; w < batch.getWorldCount(); w++) {
+                collisions += batch.getWorld(w).collisions/2;
             }
+            return collisions > budget;
+        };
+    }
+
+    public void runSimulationRendered() throws LWJGLException, IOException {
+        ArrayList<Car> cars = new ArrayList<>();
+        ArrayList<Pedestrian> pedestrians = new ArrayList<>();
+        Renderer.setupWindow(TrackParser.getName(trackFile), this,3.5f, 800, 800, controller);
+        try {
+            CompiledTrack track = TrackParser.loadTrack(trackFile, false);
+            Simulator sim = createSimulator();
 
             int stepsRun = 0;
             while (!Display.isCloseRequested()) {
@@ -136,7 +374,7 @@ public class Trial {
                     pedestrians = sim.pedestrianArray;
                     stepsRun++;
 
-                    if (stepsRun == simulationSteps) {
+                    if (stepsRun == getStepLimit()) {
                         simulating = false;
                     }
                 }
@@ -156,21 +394,19 @@ public class Trial {
 
     private class SpawnerFactory {
         private CarSpawner.Function function;
-        private byte[] weights;
         private int simulationSteps;
         private double[] params;
         private double randomDenominator;
 
-        SpawnerFactory(CarSpawner.Function function, byte[] weights, int simulationSteps, double[] params, double randomDenominator) {
+        SpawnerFactory(CarSpawner.Function function, int simulationSteps, double[] params, double randomDenominator) {
             this.function = function;
-            this.weights = weights;
             this.simulationSteps = simulationSteps;
             this.params = params;
             this.randomDenominator = randomDenominator;
         }
 
-        Actor getSpawner(Simulator sim, Node startNode) {
-            return new CarSpawner(sim, startNode, weights, simulationSteps, function, params, randomDenominator);
+        Spawner getSpawner(Simulator sim, CompiledTrack track, int startNode, NeuralNetworkController controller) {
+            return new CarSpawner(sim, track, startNode, controller, simulationSteps, function, params, randomDenominator);
         }
     }
 }
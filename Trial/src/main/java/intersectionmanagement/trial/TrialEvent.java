@@ -0,0 +1,42 @@
+package intersectionmanagement.trial;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+Flight recorder event spanning one run of a trial, so samples in a recording can be tied to the track and seed
+Nothing is recorded unless a recording has the event enabled
+ */
+@Name("intersectionmanagement.Trial")
+@Label("Trial")
+@Category({"Intersection Management", "Trial"})
+@Description("One simulation run of a trial")
+@StackTrace(false)
+class TrialEvent extends Event {
+    @Label("Track")
+    String track;
+
+    @Label("Seed")
+    int seed;
+
+    @Label("Steps")
+    @Description("Simulator steps the trial was set to run")
+    int steps;
+
+    @Label("Steps Run")
+    int stepsRun;
+
+    @Label("Collisions")
+    @Description("Number of colliding pairs")
+    int collisions;
+
+    @Label("Finished Cars")
+    int finishedCars;
+
+    @Label("Stopped Early")
+    boolean stoppedEarly;
+}
@@ -0,0 +1,36 @@
+package intersectionmanagement.trial;
+
+import intersectionmanagement.simulator.Simulator;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+Snapshots of trial warm-up prefixes, see Trial.setWarmupCache
+Every prefix is a whole simulator, so the cache belongs to whoever runs the trials, and they clear it once the trials
+it was filled for are done, like Evolution does at the start of every generation
+The prefixes are run without a network, so the cache keeps no network alive
+ */
+public final class WarmupCache {
+    private final Map<String, Simulator> warmups = new ConcurrentHashMap<>();
+
+    Simulator get(String key) {
+        return warmups.get(key);
+    }
+
+    /*
+    Adds a prefix unless another thread got there first, and returns the one that is in the cache
+     */
+    Simulator add(String key, Simulator warmup) {
+        Simulator existing = warmups.putIfAbsent(key, warmup);
+        return existing != null ? existing : warmup;
+    }
+
+    public int size() {
+        return warmups.size();
+    }
+
+    public void clear() {
+        warmups.clear();
+    }
+}
@@ -0,0 +1,267 @@
+package intersectionmanagement.trial;
+
+import intersectionmanagement.simulator.Actor;
+import intersectionmanagement.simulator.Simulator;
+import intersectionmanagement.simulator.control.NeuralNetworkController;
+import org.apache.commons.lang3.SerializationUtils;
+import org.encog.engine.network.activation.ActivationSigmoid;
+import org.encog.mathutil.randomize.factory.BasicRandomFactory;
+import org.encog.neural.neat.NEATNetwork;
+import org.encog.neural.neat.NEATPopulation;
+import org.encog.neural.networks.BasicNetwork;
+import org.encog.neural.networks.layers.BasicLayer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*
+Runs short trials on a two lane four-way intersection with the optimizations on and off, every pair must end in
+exactly the same state
+ */
+public class TrialTest {
+    private static final String TRACK = "tracks/four-way-2-lane.json";
+    private static final int STEPS = 1200;
+    private static final String[] ENGINES = {"object", "array"};
+
+    @Test
+    public void resumedSnapshotEqualsStraightRun() throws IOException {
+        for (String engine : ENGINES) {
+            Trial trial = new Trial(parameters(engine, 1, 1));
+            Simulator straight = trial.createSimulator();
+            Simulator resumed = trial.createSimulator();
+            for (int i = 0; i < STEPS/2; i++) {
+                straight.step();
+                resumed.step();
+            }
+            Simulator snapshot = resumed.snapshot();
+            // The snapshot must not share state with the simulator it was taken from
+            for (int i = 0; i < STEPS/4; i++) {
+                resumed.step();
+            }
+            resumed = snapshot.snapshot();
+            for (int i = 0; i < STEPS/2; i++) {
+                straight.step();
+                resumed.step();
+            }
+            assertSameState(engine, straight, resumed);
+        }
+    }
+
+    @Test
+    public void warmedUpTrialEqualsStraightRun() {
+        for (String engine : ENGINES) {
+            WarmupCache cache = new WarmupCache();
+            for (int network = 1; network <= 2; network++) {
+                String parameters = parameters(engine, 1, network);
+                Simulator straight = new Trial(parameters).runSimulation();
+                // The first network fills the cache, the second resumes from the first one's prefix
+                Trial warmedUp = new Trial(parameters);
+                warmedUp.setWarmupCache(cache);
+                assertSameState(engine + " network " + network, straight, warmedUp.runSimulation());
+                assertEquals(1, cache.size());
+            }
+        }
+    }
+
+    @Test
+    public void batchedWorldsEqualSoloRuns() {
+        List<Trial> trials = new ArrayList<>();
+        for (int seed = 1; seed <= 3; seed++) {
+            trials.add(new Trial(parameters("array", seed, 1)));
+        }
+        List<Simulator> batched = Trial.runSimulationBatch(trials, batch -> false);
+        for (int w = 0; w < trials.size(); w++) {
+            Simulator solo = new Trial(parameters("array", w + 1, 1)).runSimulation();
+            assertSameState("world " + w, solo, batched.get(w));
+        }
+    }
+
+    @Test
+    public void sharedControllerInParallelEqualsOwnControllers() throws Exception {
+        byte[][] networks = {network(1), basicNetwork(1)};
+        for (byte[] network : networks) {
+            List<String> parameters = new ArrayList<>();
+            for (int seed = 1; seed <= 4; seed++) {
+                JSONObject trialParameters = new JSONObject(parameters("array", seed, 1));
+                trialParameters.put("neural_network", new JSONArray(network));
+                trialParameters.put("parallel", true);
+                parameters.add(trialParameters.toString());
+            }
+
+            // Every car of every trial runs the one controller, from the trials' threads and the decide phase's
+            NeuralNetworkController controller = new NeuralNetworkController(network);
+            List<Future<Simulator>> shared = new ArrayList<>();
+            ExecutorService executor = Executors.newFixedThreadPool(parameters.size());
+            try {
+                for (String trialParameters : parameters) {
+                    shared.add(executor.submit(() -> new Trial(trialParameters, controller).runSimulation()));
+                }
+                for (int i = 0; i < parameters.size(); i++) {
+                    JSONObject sequential = new JSONObject(parameters.get(i));
+                    sequential.put("parallel", false);
+                    Simulator own = new Trial(sequential.toString()).runSimulation();
+                    assertSameState("seed " + (i + 1), own, shared.get(i).get());
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    // Dense traffic on three lanes, where this network brings queues of cars to a full stop
+    @Test
+    public void sleepingEqualsAlwaysDeciding() throws IOException {
+        JSONObject parameters = new JSONObject(parameters("array", 1, 1));
+        parameters.put("track", "tracks/four-way-3-lane.json");
+        parameters.getJSONObject("spawner").put("period", 15);
+        parameters.put("steps", 3600);
+        Trial deciding = new Trial(parameters.toString());
+        parameters.put("sleeping", true);
+        Trial sleeping = new Trial(parameters.toString());
+
+        Simulator expected = deciding.createSimulator();
+        Simulator actual = sleeping.createSimulator();
+        int asleep = 0;
+        while (expected.stepCount < deciding.getStepLimit()) {
+            expected.step();
+            actual.step();
+            for (Actor actor : actual.actorArray) {
+                if (actor.asleep) {
+                    asleep++;
+                }
+            }
+            assertSameStep("step " + actual.stepCount, expected, actual);
+        }
+        assertSameState("sleeping", expected, actual);
+        assertTrue(asleep > 0);
+    }
+
+    // The run stops on the first step after which the condition holds, in the state that step left
+    @Test
+    public void stopConditionEndsTheRunWhereItFirstHolds() throws IOException {
+        for (String engine : ENGINES) {
+            Trial trial = new Trial(parameters(engine, 1, 1));
+            Simulator expected = trial.createSimulator();
+            do {
+                expected.step();
+            } while (expected.spawnedCars < 5);
+            assertTrue(expected.stepCount < trial.getStepLimit());
+
+            Simulator stopped = trial.runSimulation(sim -> sim.spawnedCars >= 5);
+            assertTrue(engine, stopped.stoppedEarly);
+            assertSameState(engine, expected, stopped);
+        }
+    }
+
+    @Test
+    public void stopConditionStopsEveryRunningWorldOfABatch() throws IOException {
+        List<Trial> trials = new ArrayList<>();
+        for (int seed = 1; seed <= 3; seed++) {
+            trials.add(new Trial(parameters("array", seed, 1)));
+        }
+        List<Simulator> batched = Trial.runSimulationBatch(trials, batch -> batch.getWorld(1).spawnedCars >= 5);
+        Simulator expected = trials.get(1).createSimulator();
+        do {
+            expected.step();
+        } while (expected.spawnedCars < 5);
+        for (Simulator sim : batched) {
+            assertTrue(sim.stoppedEarly);
+            assertEquals(expected.stepCount, sim.stepCount);
+        }
+        assertSameState("world 1", expected, batched.get(1));
+    }
+
+    @Test
+    public void neverTrueStopConditionRunsEveryStep() throws IOException {
+        for (String engine : ENGINES) {
+            Trial trial = new Trial(parameters(engine, 1, 1));
+            Simulator expected = trial.createSimulator();
+            while (expected.stepCount < trial.getStepLimit()) {
+                expected.step();
+            }
+
+            Simulator unstopped = trial.runSimulation(sim -> false);
+            assertFalse(engine, unstopped.stoppedEarly);
+            assertSameState(engine, expected, unstopped);
+        }
+    }
+
+    static String parameters(String engine, int seed, long networkSeed) {
+        JSONObject spawner = new JSONObject();
+        spawner.put("type", "constant");
+        spawner.put("period", 40);
+        spawner.put("randomness", 0.5);
+        spawner.put("pedestrian_rate", 200);
+        spawner.put("pedestrian_randomness", 1);
+
+        JSONObject parameters = new JSONObject();
+        parameters.put("spawner", spawner);
+        parameters.put("steps", STEPS);
+        parameters.put("track", TRACK);
+        parameters.put("seed", seed);
+        parameters.put("engine", engine);
+        parameters.put("neural_network", new JSONArray(network(networkSeed)));
+        return parameters.toString();
+    }
+
+    // A network of the neat algorithm's initial population
+    static byte[] network(long seed) {
+        NEATPopulation population = new NEATPopulation(14, 2, 1);
+        population.setRandomNumberFactory(new BasicRandomFactory(seed));
+        population.setInitialConnectionDensity(1.0);
+        population.reset();
+        NEATNetwork network = (NEATNetwork) population.getCODEC().decode(population.flatten().get(0));
+        return SerializationUtils.serialize(network);
+    }
+
+    // A network as the cne algorithm sets them up
+    static byte[] basicNetwork(int seed) {
+        BasicNetwork network = new BasicNetwork();
+        network.addLayer(new BasicLayer(null, true, 14));
+        network.addLayer(new BasicLayer(new ActivationSigmoid(), false, 30));
+        network.addLayer(new BasicLayer(new ActivationSigmoid(), false, 2));
+        network.getStructure().finalizeStructure();
+        network.reset(seed);
+        return SerializationUtils.serialize(network);
+    }
+
+    static void assertSameState(String message, Simulator expected, Simulator actual) {
+        assertSameStep(message, expected, actual);
+        assertTrue(message, expected.spawnedCars > 0);
+    }
+
+    // Same as assertSameState, but also holds before the first car spawns
+    private static void assertSameStep(String message, Simulator expected, Simulator actual) {
+        assertEquals(message, expected.stepCount, actual.stepCount);
+        assertEquals(message, expected.collisions, actual.collisions);
+        assertEquals(message, expected.finishedCars, actual.finishedCars);
+        assertEquals(message, expected.spawnedCars, actual.spawnedCars);
+        assertSameActors(message + " cars", expected.carArray, actual.carArray);
+        assertSameActors(message + " pedestrians", expected.pedestrianArray, actual.pedestrianArray);
+    }
+
+    private static void assertSameActors(String message, List<? extends Actor> expected, List<? extends Actor> actual) {
+        assertEquals(message, expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Actor e = expected.get(i);
+            Actor a = actual.get(i);
+            assertEquals(message, e.id, a.id);
+            assertEquals(message, e.currentNode, a.currentNode);
+            assertEquals(message, Float.floatToIntBits(e.x), Float.floatToIntBits(a.x));
+            assertEquals(message, Float.floatToIntBits(e.y), Float.floatToIntBits(a.y));
+            assertEquals(message, Float.floatToIntBits(e.direction), Float.floatToIntBits(a.direction));
+            assertEquals(message, Float.floatToIntBits(e.speed), Float.floatToIntBits(a.speed));
+        }
+    }
+}